@@ -32,6 +32,7 @@ dependencies {
 
     implementation("io.netty:netty-all:4.2.9.Final")
     implementation("com.google.guava:guava:33.5.0-jre")
+    implementation("com.github.ben-manes.caffeine:caffeine:3.2.3")
     implementation("com.google.code.gson:gson:2.13.2")
     implementation("it.unimi.dsi:fastutil:8.5.18")
     implementation("net.raphimc:MinecraftAuth:5.0.0")
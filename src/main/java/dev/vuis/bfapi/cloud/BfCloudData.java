@@ -4,6 +4,9 @@ import com.google.gson.stream.JsonWriter;
 import dev.vuis.bfapi.cloud.cache.BfDataCache;
 import dev.vuis.bfapi.data.Serialization;
 import it.unimi.dsi.fastutil.Pair;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMaps;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectIntImmutablePair;
 import java.io.IOException;
 import java.time.Instant;
@@ -13,13 +16,41 @@ import java.util.UUID;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+/**
+ * @param playerScoreIndex each player's position in {@code playerScores}
+ */
 public record BfCloudData(
 	int usersOnline,
 	Map<String, Integer> gamePlayerCount,
 	Instant scoreboardResetTime,
 	List<ObjectIntImmutablePair<UUID>> playerScores,
-	List<ObjectIntImmutablePair<UUID>> clanScores
+	List<ObjectIntImmutablePair<UUID>> clanScores,
+	Object2IntMap<UUID> playerScoreIndex
 ) {
+	/**
+	 * @param playerScores players by descending score
+	 * @param clanScores clans by descending score
+	 */
+	public BfCloudData(int usersOnline, Map<String, Integer> gamePlayerCount, Instant scoreboardResetTime, List<ObjectIntImmutablePair<UUID>> playerScores, List<ObjectIntImmutablePair<UUID>> clanScores) {
+		this(usersOnline, gamePlayerCount, scoreboardResetTime, playerScores, clanScores, indexScores(playerScores));
+	}
+
+	/**
+	 * @return the player's 0-based scoreboard position, or {@code -1} if they aren't on the scoreboard
+	 */
+	public int playerScoreboardIndex(@NotNull UUID uuid) {
+		return playerScoreIndex.getInt(uuid);
+	}
+
+	private static Object2IntMap<UUID> indexScores(List<ObjectIntImmutablePair<UUID>> scores) {
+		Object2IntOpenHashMap<UUID> index = new Object2IntOpenHashMap<>(scores.size());
+		index.defaultReturnValue(-1);
+		for (int i = 0; i < scores.size(); i++) {
+			index.put(scores.get(i).left(), i);
+		}
+		return Object2IntMaps.unmodifiable(index);
+	}
+
 	public @NotNull JsonWriter serialize(@NotNull JsonWriter w, @Nullable BfDataCache dataCache) throws IOException {
 		w.beginObject();
 
@@ -21,8 +21,6 @@ import com.boehmod.bflib.cloud.packet.common.requests.PacketRequestedPlayerData;
 import com.boehmod.bflib.cloud.packet.common.requests.PacketRequestedPlayerDataSet;
 import com.boehmod.bflib.cloud.packet.common.requests.PacketRequestedPlayerStatusSet;
 import com.boehmod.bflib.cloud.packet.common.server.PacketServerNotification;
-import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import it.unimi.dsi.fastutil.Pair;
 import it.unimi.dsi.fastutil.objects.ObjectIntImmutablePair;
 import java.time.Instant;
@@ -106,7 +104,10 @@ public final class BfCloudPacketHandlers {
 	}
 
 	private static void requestedInventory(PacketRequestedInventory packet, BfConnection connection) {
-		connection.dataCache.playerInventory.supply(packet.uuid(), inventory -> inventory.onReceiveSection(packet.stacks(), packet.section()));
+		connection.dataCache.playerInventory.supply(
+			packet.uuid(),
+			inventory -> inventory.onReceiveSection(packet.stacks(), packet.section())
+		);
 	}
 
 	private static void requestedItemDefault(PacketRequestedItemDefault packet, BfConnection connection) {
@@ -134,19 +135,7 @@ public final class BfCloudPacketHandlers {
 	}
 
 	private static void handlePlayerData(UUID uuid, PlayerDataContext context, byte[] data, BfConnection connection) {
-		BfPlayerData playerData = new BfPlayerData(uuid);
-		ByteBuf buf = Unpooled.wrappedBuffer(data);
-
-		try {
-			playerData.read(context, buf);
-		} catch (Exception e) {
-			log.error("failed to read player data", e);
-			connection.dataCache.playerData.complete(uuid, e);
-			return;
-		} finally {
-			buf.release();
-		}
-
-		connection.dataCache.playerData.complete(uuid, playerData);
+		// decoded when first read
+		connection.dataCache.playerData.complete(uuid, new PlayerDataPayload(context, data));
 	}
 }
@@ -18,7 +18,9 @@ import com.boehmod.bflib.cloud.packet.primitives.ClientLogoutPacket;
 import com.boehmod.bflib.cloud.packet.primitives.EncryptionKeyExchangePacket;
 import com.boehmod.bflib.cloud.packet.primitives.EncryptionReadyPacket;
 import dev.vuis.bfapi.cloud.cache.BfDataCache;
+import dev.vuis.bfapi.data.BfApiConfig;
 import dev.vuis.bfapi.util.AuthUtil;
+import dev.vuis.bfapi.util.NettyTransport;
 import dev.vuis.bfapi.util.Util;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
@@ -27,9 +29,7 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.MultiThreadIoEventLoopGroup;
-import io.netty.channel.nio.NioIoHandler;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.EventLoopGroup;
 import java.io.IOException;
 import java.net.SocketAddress;
 import java.security.GeneralSecurityException;
@@ -41,10 +41,13 @@ import java.util.HexFormat;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import javax.crypto.SecretKey;
 import lombok.Getter;
@@ -60,15 +63,17 @@ public class BfConnection extends Connection<BfPlayerData> {
 	private static final int MAX_CONNECT_ATTEMPTS = 5;
 
 	private static final Random SECURE_RANDOM = new SecureRandom();
+	/**
+	 * Runs the blocking Microsoft and Mojang calls made while connecting.
+	 */
+	private static final Executor AUTH_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
 
 	public final BfDataCache dataCache = new BfDataCache(this);
 	public final CloudRegistry registry = new CloudRegistry();
+	public final RequestBatcher requestBatcher;
 
-	private final ScheduledExecutorService heartbeatExecutor = Executors.newSingleThreadScheduledExecutor();
 	private @Nullable ScheduledFuture<?> heartbeatFuture;
 
-	private final ScheduledExecutorService reconnectExecutor = Executors.newSingleThreadScheduledExecutor();
-
 	private final Set<Consumer<ConnectionStatus>> statusListeners = new HashSet<>();
 
 	private final KeyPair clientKeyPair;
@@ -86,18 +91,30 @@ public class BfConnection extends Connection<BfPlayerData> {
 	private final String version;
 	private final String versionHash;
 	private final byte[] hardwareId;
+	private final NettyTransport transport;
+	/**
+	 * Shared with the HTTP server and owned by the caller; heartbeats and reconnects are scheduled on it too.
+	 */
+	private final EventLoopGroup group;
 
 	@Getter
 	private @Nullable Channel channel = null;
 	private int connectAttempts = 0;
 
-	public BfConnection(SocketAddress address, JavaAuthManager mcAuth, String version, String versionHash, byte[] hardwareId) {
+	public BfConnection(SocketAddress address, JavaAuthManager mcAuth, String version, String versionHash, byte[] hardwareId, NettyTransport transport, EventLoopGroup group) {
 		super(30 * 20);
 		this.address = address;
 		this.mcAuth = mcAuth;
 		this.version = version;
 		this.versionHash = versionHash;
 		this.hardwareId = hardwareId;
+		this.transport = transport;
+		this.group = group;
+		this.requestBatcher = new RequestBatcher(
+			this, group,
+			BfApiConfig.instance().getBfRequestBatchWindowMillis(),
+			BfApiConfig.instance().getBfRequestBatchMaxEntries()
+		);
 
 		CloudAchievements.registerAchievements(registry);
 		CloudItems.registerItems(registry);
@@ -107,8 +124,8 @@ public class BfConnection extends Connection<BfPlayerData> {
 		log.info("connecting to cloud at {}", address);
 
 		Bootstrap bootstrap = new Bootstrap()
-			.group(new MultiThreadIoEventLoopGroup(2, NioIoHandler.newFactory()))
-			.channel(NioSocketChannel.class)
+			.group(group)
+			.channel(transport.getSocketChannelClass())
 			.option(ChannelOption.TCP_NODELAY, true)
 			.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 30_000)
 			.handler(new BfCloudChannelInitializer(this));
@@ -138,24 +155,80 @@ public class BfConnection extends Connection<BfPlayerData> {
 		return channel != null && channel.isActive() && getStatus().isVerified();
 	}
 
-	private void sendCredentials() throws IOException {
-		log.info("sending cloud credentials");
+	private void sendCredentials() {
+		Channel channel = channelOrThrow();
 
-		MinecraftProfile mcProfile = mcAuth.getMinecraftProfile().getUpToDate();
+		onAuthExecutor(channel, () -> mcAuth.getMinecraftProfile().getUpToDate(), (mcProfile, e) -> {
+			if (e != null) {
+				log.error("failed to refresh minecraft profile", e);
+				disconnect("failed to refresh minecraft profile", false);
+				return;
+			}
 
-		EncryptedConnectionCredentials credentials = new EncryptedConnectionCredentials(
-			getType(),
-			mcProfile.getId(),
-			mcProfile.getName(),
-			version,
-			versionHash,
-			hardwareId,
-			clientKeyPair.getPublic()
-		);
+			log.info("sending cloud credentials");
+
+			EncryptedConnectionCredentials credentials = new EncryptedConnectionCredentials(
+				getType(),
+				mcProfile.getId(),
+				mcProfile.getName(),
+				version,
+				versionHash,
+				hardwareId,
+				clientKeyPair.getPublic()
+			);
+
+			ByteBuf buf = Unpooled.buffer();
+			try {
+				credentials.writeCredentials(buf);
+			} catch (Exception ex) {
+				buf.release();
+				log.error("failed to write cloud credentials", ex);
+				disconnect("failed to write cloud credentials", false);
+				return;
+			}
+			channel.writeAndFlush(buf);
+		});
+	}
+
+	private void joinServerAndLogin() {
+		Channel channel = channelOrThrow();
+		String serverId = randomServerId();
+
+		log.info("joining session server");
+		onAuthExecutor(channel, () -> {
+			MinecraftProfile mcProfile = mcAuth.getMinecraftProfile().getUpToDate();
+			MinecraftToken mcToken = mcAuth.getMinecraftToken().getUpToDate();
+			AuthUtil.mcJoinServer(mcProfile.getId(), mcToken.getToken(), serverId);
+			return serverId;
+		}, (_, e) -> {
+			if (e != null) {
+				log.error("failed to join session server", e);
+				disconnect("failed to join session server", true);
+				return;
+			}
 
-		ByteBuf buf = Unpooled.buffer();
-		credentials.writeCredentials(buf);
-		channelOrThrow().writeAndFlush(buf);
+			log.info("sending login packet");
+			sendPacket(new ClientLoginPacket(serverId, 0));
+		});
+	}
+
+	/**
+	 * Runs a blocking auth call off the event loops, which are shared with HTTP traffic, then hands its result to
+	 * {@code then} on {@code channel}'s event loop. Results for a channel that has since been replaced are dropped.
+	 */
+	private <T> void onAuthExecutor(Channel channel, AuthCall<T> call, BiConsumer<T, @Nullable Throwable> then) {
+		CompletableFuture.supplyAsync(() -> {
+			try {
+				return call.call();
+			} catch (Exception e) {
+				throw new CompletionException(e);
+			}
+		}, AUTH_EXECUTOR).whenCompleteAsync((result, e) -> {
+			if (this.channel != channel) {
+				return;
+			}
+			then.accept(result, e instanceof CompletionException ce && ce.getCause() != null ? ce.getCause() : e);
+		}, channel.eventLoop());
 	}
 
 	void handleKeyExchange(EncryptionKeyExchangePacket packet) throws GeneralSecurityException {
@@ -188,33 +261,20 @@ public class BfConnection extends Connection<BfPlayerData> {
 
 		switch (status) {
 			case CONNECTED_NOT_VERIFIED -> {
-				String serverId = randomServerId();
-
-				log.info("joining session server");
-				try {
-					MinecraftProfile mcProfile = mcAuth.getMinecraftProfile().getUpToDate();
-					MinecraftToken mcToken = mcAuth.getMinecraftToken().getUpToDate();
-					AuthUtil.mcJoinServer(mcProfile.getId(), mcToken.getToken(), serverId);
-				} catch (IOException | InterruptedException e) {
-					log.error("failed to join session server", e);
-					disconnect("failed to join session server", true);
-				}
-
-				log.info("sending login packet");
-				sendPacket(new ClientLoginPacket(serverId, 0));
+				joinServerAndLogin();
 			}
 			case CONNECTED_VERIFIED -> {
 				log.info("cloud connection verified");
 				connectAttempts = 0;
 
 				if (heartbeatFuture == null) {
-					heartbeatFuture = heartbeatExecutor.scheduleAtFixedRate(
+					heartbeatFuture = channelOrThrow().eventLoop().scheduleAtFixedRate(
 						this::heartbeat,
 						5, 15, TimeUnit.SECONDS
 					);
 				}
 
-//				reconnectExecutor.schedule(
+//				group.schedule(
 //					() -> reconnect(true),
 //					30, TimeUnit.MINUTES
 //				);
@@ -246,7 +306,7 @@ public class BfConnection extends Connection<BfPlayerData> {
 			} else {
 				log.info("reconnecting in 60 seconds");
 
-				reconnectExecutor.schedule(
+				group.schedule(
 					this::connect,
 					60, TimeUnit.SECONDS
 				);
@@ -331,6 +391,11 @@ public class BfConnection extends Connection<BfPlayerData> {
 		log.error("illegal packet {} (expected: {}, actual: {})", packet.getClass().getSimpleName(), expectedType, actualType);
 	}
 
+	@FunctionalInterface
+	private interface AuthCall<T> {
+		T call() throws IOException, InterruptedException;
+	}
+
 	private static String randomServerId() {
 		byte[] bytes = new byte[20];
 		SECURE_RANDOM.nextBytes(bytes);
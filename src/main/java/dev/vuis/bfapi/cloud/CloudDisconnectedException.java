@@ -0,0 +1,10 @@
+package dev.vuis.bfapi.cloud;
+
+/**
+ * Thrown when data that isn't cached is requested while the cloud connection is down.
+ */
+public class CloudDisconnectedException extends RuntimeException {
+	public CloudDisconnectedException() {
+		super("cloud is disconnected and nothing is cached");
+	}
+}
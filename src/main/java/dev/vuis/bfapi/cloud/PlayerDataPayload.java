@@ -0,0 +1,26 @@
+package dev.vuis.bfapi.cloud;
+
+import com.boehmod.bflib.cloud.common.player.PlayerDataContext;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.IOException;
+import java.util.UUID;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Player data as the cloud sent it.
+ */
+public record PlayerDataPayload(@NotNull PlayerDataContext context, byte @NotNull [] data) {
+	public @NotNull BfPlayerData decode(@NotNull UUID uuid) throws IOException {
+		BfPlayerData playerData = new BfPlayerData(uuid);
+		ByteBuf buf = Unpooled.wrappedBuffer(data);
+		try {
+			playerData.read(context, buf);
+		} catch (IndexOutOfBoundsException e) {
+			throw new IOException("truncated player data", e);
+		} finally {
+			buf.release();
+		}
+		return playerData;
+	}
+}
@@ -0,0 +1,29 @@
+package dev.vuis.bfapi.cloud;
+
+import dev.vuis.bfapi.util.Util;
+import java.util.UUID;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The few player data fields leaderboards need, without the rest of the decoded object graph.
+ */
+public record PlayerSummary(
+	@NotNull UUID uuid,
+	@NotNull String username,
+	int exp,
+	int prestige,
+	@Nullable UUID clanId
+) {
+	public static @NotNull PlayerSummary of(@NotNull BfPlayerData data) {
+		return new PlayerSummary(data.getUUID(), data.getUsername(), data.getExp(), data.getPrestigeLevel(), data.getClanId());
+	}
+
+	public int totalExp() {
+		return Util.getTotalExp(prestige, exp);
+	}
+
+	public boolean hasPrestigeExp() {
+		return Util.hasPrestigeExp(prestige, exp);
+	}
+}
@@ -0,0 +1,227 @@
+package dev.vuis.bfapi.cloud;
+
+import com.boehmod.bflib.cloud.common.RequestType;
+import com.boehmod.bflib.cloud.packet.common.PacketClientRequest;
+import com.google.gson.stream.JsonWriter;
+import io.netty.util.concurrent.EventExecutorGroup;
+import it.unimi.dsi.fastutil.objects.Object2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectList;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Merges cloud requests from all cache holders into as few {@link PacketClientRequest}s as possible.
+ * <p>
+ * Requests are held for up to the batch window, or until the batch holds {@code maxEntries} UUIDs,
+ * and request types for the same UUID are merged into one entry.
+ */
+@Slf4j
+public final class RequestBatcher {
+	private final BfConnection connection;
+	private final EventExecutorGroup scheduler;
+	private final long windowNanos;
+	private final int maxEntries;
+
+	private final EnumSet<RequestType> globalTypes = EnumSet.noneOf(RequestType.class);
+	private final Map<UUID, EnumSet<RequestType>> entries = new Object2ObjectLinkedOpenHashMap<>();
+	private long oldestNanos;
+	private int suspendCount = 0;
+	private @Nullable ScheduledFuture<?> flushFuture = null;
+
+	private long batchCount = 0;
+	private long entryCount = 0;
+	private long mergedCount = 0;
+	private int maxBatchSize = 0;
+	private long totalDelayNanos = 0;
+	private long maxDelayNanos = 0;
+
+	/**
+	 * @param windowMillis how long the first request of a batch may wait, or {@code 0} to send every request immediately
+	 */
+	RequestBatcher(BfConnection connection, EventExecutorGroup scheduler, long windowMillis, int maxEntries) {
+		this.connection = connection;
+		this.scheduler = scheduler;
+		this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+		this.maxEntries = Math.max(maxEntries, 1);
+	}
+
+	public void request(@NotNull RequestType type) {
+		PacketClientRequest packet;
+		synchronized (this) {
+			markQueued();
+			globalTypes.add(type);
+			packet = flushIfDue();
+		}
+		send(packet);
+	}
+
+	public void request(@NotNull UUID uuid, @NotNull RequestType type) {
+		PacketClientRequest packet;
+		synchronized (this) {
+			add(uuid, type);
+			packet = flushIfDue();
+		}
+		send(packet);
+	}
+
+	public void request(@NotNull Collection<UUID> uuids, @NotNull RequestType type) {
+		ObjectList<PacketClientRequest> packets = new ObjectArrayList<>(1);
+		synchronized (this) {
+			for (UUID uuid : uuids) {
+				add(uuid, type);
+				if (entries.size() >= maxEntries) {
+					packets.add(drain());
+				}
+			}
+			PacketClientRequest packet = flushIfDue();
+			if (packet != null) {
+				packets.add(packet);
+			}
+		}
+		for (PacketClientRequest packet : packets) {
+			send(packet);
+		}
+	}
+
+	/**
+	 * Holds back queued requests until the matching {@link #resumeFlush()}, so that requests made in between leave
+	 * in one packet. The size cap still applies.
+	 */
+	public synchronized void suspendFlush() {
+		suspendCount++;
+	}
+
+	public void resumeFlush() {
+		PacketClientRequest packet;
+		synchronized (this) {
+			if (suspendCount == 0) {
+				throw new IllegalStateException("flushing is not suspended");
+			}
+			suspendCount--;
+			packet = flushIfDue();
+		}
+		send(packet);
+	}
+
+	/**
+	 * Sends everything queued so far.
+	 */
+	public void flush() {
+		PacketClientRequest packet;
+		synchronized (this) {
+			packet = isEmpty() ? null : drain();
+		}
+		send(packet);
+	}
+
+	public synchronized void serializeStats(@NotNull JsonWriter w) throws IOException {
+		w.beginObject();
+
+		w.name("batches").value(batchCount);
+		w.name("entries").value(entryCount);
+		w.name("merged_requests").value(mergedCount);
+		w.name("mean_batch_size").value(batchCount == 0 ? 0 : (double) entryCount / batchCount);
+		w.name("max_batch_size").value(maxBatchSize);
+		w.name("mean_delay_ms").value(batchCount == 0 ? 0 : totalDelayNanos / 1e6 / batchCount);
+		w.name("max_delay_ms").value(maxDelayNanos / 1e6);
+
+		w.endObject();
+	}
+
+	private void add(UUID uuid, RequestType type) {
+		markQueued();
+		EnumSet<RequestType> types = entries.get(uuid);
+		if (types == null) {
+			entries.put(uuid, EnumSet.of(type));
+		} else {
+			types.add(type);
+			mergedCount++;
+		}
+	}
+
+	private void markQueued() {
+		if (isEmpty()) {
+			oldestNanos = System.nanoTime();
+		}
+	}
+
+	private boolean isEmpty() {
+		return globalTypes.isEmpty() && entries.isEmpty();
+	}
+
+	private @Nullable PacketClientRequest flushIfDue() {
+		if (isEmpty()) {
+			return null;
+		}
+		if (entries.size() >= maxEntries) {
+			return drain();
+		}
+		if (suspendCount > 0) {
+			return null;
+		}
+		long remainingNanos = windowNanos - (System.nanoTime() - oldestNanos);
+		if (remainingNanos <= 0) {
+			return drain();
+		}
+		if (flushFuture == null) {
+			flushFuture = scheduler.schedule(this::flushWindow, remainingNanos, TimeUnit.NANOSECONDS);
+		}
+		return null;
+	}
+
+	private void flushWindow() {
+		PacketClientRequest packet;
+		synchronized (this) {
+			flushFuture = null;
+			// resumeFlush() reschedules whatever is held back
+			packet = suspendCount > 0 || isEmpty() ? null : drain();
+		}
+		send(packet);
+	}
+
+	private PacketClientRequest drain() {
+		if (flushFuture != null) {
+			flushFuture.cancel(false);
+			flushFuture = null;
+		}
+
+		ObjectList<Map.Entry<UUID, EnumSet<RequestType>>> requestEntries = new ObjectArrayList<>(entries.size());
+		for (Map.Entry<UUID, EnumSet<RequestType>> entry : entries.entrySet()) {
+			requestEntries.add(Map.entry(entry.getKey(), entry.getValue()));
+		}
+		PacketClientRequest packet = new PacketClientRequest(EnumSet.copyOf(globalTypes), requestEntries);
+
+		long delay = System.nanoTime() - oldestNanos;
+		batchCount++;
+		entryCount += entries.size();
+		maxBatchSize = Math.max(maxBatchSize, entries.size());
+		totalDelayNanos += delay;
+		maxDelayNanos = Math.max(maxDelayNanos, delay);
+
+		globalTypes.clear();
+		// the sets now belong to the packet; later requests start new ones
+		entries.clear();
+
+		return packet;
+	}
+
+	private void send(@Nullable PacketClientRequest packet) {
+		if (packet == null) {
+			return;
+		}
+		if (!connection.isConnectedAndVerified()) {
+			log.warn("dropping cloud request batch; not connected");
+			return;
+		}
+		connection.sendPacket(packet);
+	}
+}
@@ -0,0 +1,12 @@
+package dev.vuis.bfapi.cloud;
+
+import java.util.UUID;
+
+/**
+ * Thrown when the cloud has repeatedly failed to answer for a UUID, or has said it doesn't know it.
+ */
+public class UnknownUuidException extends RuntimeException {
+	public UnknownUuidException(UUID uuid) {
+		super("unknown uuid " + uuid);
+	}
+}
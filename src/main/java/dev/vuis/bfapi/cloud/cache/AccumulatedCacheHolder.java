@@ -1,43 +1,74 @@
 package dev.vuis.bfapi.cloud.cache;
 
 import com.boehmod.bflib.cloud.common.RequestType;
+import com.google.gson.stream.JsonWriter;
 import dev.vuis.bfapi.cloud.BfConnection;
-import dev.vuis.bfapi.util.cache.TimedAccumulator;
+import io.netty.util.Timer;
+import java.io.IOException;
 import java.time.Duration;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import org.jetbrains.annotations.NotNull;
 
+/**
+ * Values arrive in numbered sections, and complete once no section has arrived for the quiet period. The packets
+ * don't say how many sections a value has, so there is no earlier point at which a value is known to be complete.
+ * <p>
+ * At most {@code maxAssembling} values are assembled at once. Sections of a value arriving beyond that are dropped
+ * until the value goes quiet, and a pending request for it is then sent again, so a partial value is never cached.
+ */
 public class AccumulatedCacheHolder<T> extends IdentifiableCacheHolder<T> {
+	static final Duration QUIET_PERIOD = Duration.ofMillis(250);
+
+	final Timer timer;
 	private final Supplier<T> constructor;
+	private final int maxAssembling;
+	private final Map<UUID, SectionAccumulator<T>> accumulators = new ConcurrentHashMap<>();
 
-	private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
-	private final Map<UUID, TimedAccumulator<UUID, T>> accumulators = new ConcurrentHashMap<>();
+	private final LongAdder overflows = new LongAdder();
 
-	AccumulatedCacheHolder(BfConnection connection, RequestType requestType, Supplier<T> constructor, Duration lifetime) {
-		super(connection, requestType, lifetime);
+	AccumulatedCacheHolder(BfConnection connection, RequestType requestType, Supplier<T> constructor, Duration lifetime, Duration staleGrace, PendingDeadlines deadlines, RefreshAhead refreshAhead, NegativeCache negativeCache, long maxBytes, ToIntFunction<T> weigher, Timer timer, int maxAssembling) {
+		super(connection, requestType, lifetime, staleGrace, deadlines, refreshAhead, negativeCache, maxBytes, weigher);
 		this.constructor = constructor;
+		this.timer = timer;
+		this.maxAssembling = maxAssembling;
 	}
 
 	public void supply(UUID uuid, Consumer<T> mutator) {
-		accumulators.computeIfAbsent(
-			uuid, k -> new TimedAccumulator<>(executor, Duration.ofMillis(250), AccumulatedCacheHolder.this::complete, k, constructor.get())
-		).supply(mutator);
+		accumulators.computeIfAbsent(uuid, k -> {
+			if (accumulators.size() < maxAssembling) {
+				return new SectionAccumulator<>(this, k, constructor.get());
+			}
+			overflows.increment();
+			return new SectionAccumulator<>(this, k, null);
+		}).supply(mutator);
 	}
 
-	@Override
-	public void complete(UUID uuid, T data) {
+	void assembled(UUID uuid, T data) {
 		super.complete(uuid, data);
-		accumulators.remove(uuid);
+	}
+
+	/**
+	 * Sends a pending request for a value whose sections were dropped again.
+	 */
+	void dropped(UUID uuid) {
+		if (pending.containsKey(uuid)) {
+			request(uuid, true);
+		}
+	}
+
+	void retire(UUID uuid, SectionAccumulator<T> accumulator) {
+		accumulators.remove(uuid, accumulator);
 	}
 
 	@Override
-	public void complete(UUID uuid, Exception e) {
-		super.complete(uuid, e);
-		accumulators.remove(uuid);
+	protected void serializeExtraStats(@NotNull JsonWriter w) throws IOException {
+		w.name("assembling").value(accumulators.size());
+		w.name("overflows").value(overflows.sum());
 	}
 }
@@ -3,46 +3,113 @@ package dev.vuis.bfapi.cloud.cache;
 import com.boehmod.bflib.cloud.common.AbstractClanData;
 import com.boehmod.bflib.cloud.common.RequestType;
 import com.boehmod.bflib.cloud.common.player.status.PlayerStatus;
+import com.google.gson.stream.JsonWriter;
 import dev.vuis.bfapi.cloud.BfCloudData;
 import dev.vuis.bfapi.cloud.BfConnection;
-import dev.vuis.bfapi.cloud.BfPlayerData;
 import dev.vuis.bfapi.cloud.BfPlayerInventory;
+import dev.vuis.bfapi.data.BfApiConfig;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.io.IOException;
 import java.time.Duration;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.jetbrains.annotations.NotNull;
 
 public class BfDataCache {
+	private static final long CLEAN_UP_INTERVAL_SECONDS = 30;
+
 	public final IdentifiableCacheHolder<AbstractClanData> clanData;
 	public final SingletonCacheHolder<BfCloudData> cloudData;
 	public final IdentifiableCacheHolder<Set<UUID>> itemDefault;
-	public final IdentifiableCacheHolder<BfPlayerData> playerData;
+	public final PlayerDataCacheHolder playerData;
 	public final AccumulatedCacheHolder<BfPlayerInventory> playerInventory;
 	public final IdentifiableCacheHolder<PlayerStatus> playerStatus;
 
+	/**
+	 * Tracks pending request deadlines and inventory assembly for every holder.
+	 */
+	private final Timer timer = new HashedWheelTimer(new DefaultThreadFactory("cloud-request-timer", true), 50, TimeUnit.MILLISECONDS);
+	private final RefreshAhead refreshAhead;
+
 	public BfDataCache(BfConnection connection) {
+		BfApiConfig config = BfApiConfig.instance();
+		Duration staleGrace = config.getBfStaleGrace();
+		Supplier<PendingDeadlines> deadlines = () -> new PendingDeadlines(timer, config.getBfRequestTimeout(), config.getBfRequestRetries());
+		Supplier<NegativeCache> negativeCache = () -> new NegativeCache(config.getBfNegativeCacheTtl(), config.getBfUnknownFilterSize(), config.getBfUnknownFilterRotation());
+		refreshAhead = new RefreshAhead(config.getBfRefreshAheadFraction(), config.getBfRefreshAheadPerSecond());
+
 		clanData = new IdentifiableCacheHolder<>(
 			connection, RequestType.CLAN_DATA,
-			Duration.ofMinutes(5)
+			Duration.ofMinutes(5), staleGrace, deadlines.get(), refreshAhead, negativeCache.get(),
+			config.getBfCacheMaxBytesClanData(), CacheWeights::clanData
 		);
 		cloudData = new SingletonCacheHolder<>(
 			connection, RequestType.CLOUD_STATS,
-			Duration.ofSeconds(30)
+			Duration.ofSeconds(30), staleGrace, deadlines.get(), refreshAhead
 		);
 		itemDefault = new IdentifiableCacheHolder<>(
 			connection, RequestType.PLAYER_INVENTORY_DEFAULTS,
-			Duration.ofMinutes(5)
+			Duration.ofMinutes(5), staleGrace, deadlines.get(), refreshAhead, negativeCache.get(),
+			config.getBfCacheMaxBytesItemDefault(), CacheWeights::itemDefault
 		);
-		playerData = new IdentifiableCacheHolder<>(
-			connection, RequestType.PLAYER_DATA,
-			Duration.ofSeconds(90)
+		playerData = new PlayerDataCacheHolder(
+			new IdentifiableCacheHolder<>(
+				connection, RequestType.PLAYER_DATA,
+				Duration.ofSeconds(90), staleGrace, deadlines.get(), refreshAhead, negativeCache.get(),
+				config.getBfCacheMaxBytesPlayerData(), CacheWeights::playerData
+			),
+			config.getBfPlayerDataDecodedCacheSize()
 		);
 		playerInventory = new AccumulatedCacheHolder<>(
 			connection, RequestType.PLAYER_INVENTORY, BfPlayerInventory::new,
-			Duration.ofMinutes(5)
+			Duration.ofMinutes(5), staleGrace, deadlines.get(), refreshAhead, negativeCache.get(),
+			config.getBfCacheMaxBytesPlayerInventory(), CacheWeights::playerInventory,
+			timer, config.getBfMaxAssemblingInventories()
 		);
 		playerStatus = new IdentifiableCacheHolder<>(
 			connection, RequestType.PLAYER_STATUS,
-			Duration.ofSeconds(30)
+			Duration.ofSeconds(30), staleGrace, deadlines.get(), refreshAhead, negativeCache.get(),
+			config.getBfCacheMaxBytesPlayerStatus(), CacheWeights::playerStatus
 		);
+
+		scheduleCleanUp();
+	}
+
+	private void scheduleCleanUp() {
+		timer.newTimeout(_ -> {
+			clanData.cleanUp();
+			itemDefault.cleanUp();
+			playerData.cleanUp();
+			playerInventory.cleanUp();
+			playerStatus.cleanUp();
+			scheduleCleanUp();
+		}, CLEAN_UP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+	}
+
+	public void serializeStats(@NotNull JsonWriter w) throws IOException {
+		w.beginObject();
+
+		w.name("clan_data");
+		clanData.serializeStats(w);
+		w.name("cloud_data");
+		cloudData.serializeStats(w);
+		w.name("item_default");
+		itemDefault.serializeStats(w);
+		w.name("player_data");
+		playerData.serializeStats(w);
+		w.name("player_data_decoded");
+		playerData.serializeDecodedStats(w);
+		w.name("player_inventory");
+		playerInventory.serializeStats(w);
+		w.name("player_status");
+		playerStatus.serializeStats(w);
+		w.name("refresh_ahead");
+		refreshAhead.serializeStats(w);
+
+		w.endObject();
 	}
 }
@@ -0,0 +1,341 @@
+package dev.vuis.bfapi.cloud.cache;
+
+import com.boehmod.bflib.cloud.common.player.PlayerDataContext;
+import dev.vuis.bfapi.cloud.BfCloudData;
+import dev.vuis.bfapi.cloud.PlayerDataPayload;
+import dev.vuis.bfapi.cloud.unofficial.UnofficialCloudData;
+import dev.vuis.bfapi.data.MinecraftProfileData;
+import dev.vuis.bfapi.util.cache.ExpiryHolder;
+import it.unimi.dsi.fastutil.objects.Object2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectIntImmutablePair;
+import it.unimi.dsi.fastutil.objects.ObjectList;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Saves cached cloud data to disk so a restart doesn't begin with empty caches.
+ * <p>
+ * A snapshot is a header followed by length-prefixed records, written front to back into a temporary file that then
+ * replaces the previous snapshot. It is rewritten whole rather than appended to: an append-only log would grow with
+ * every refresh of a hot player and need compaction of its own, while a full rewrite stays bounded by the caches'
+ * size. Player data is kept as the raw cloud payload.
+ * Loading maps the file into memory. Restored values keep their original receive times, so ones past their lifetime
+ * are served as stale and revalidated like any other.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public final class CacheSnapshot {
+	private static final int MAGIC = 0x42465350; // BFSP
+	private static final int VERSION = 2;
+
+	private static final byte RECORD_PLAYER_DATA = 1;
+	private static final byte RECORD_CLOUD_DATA = 2;
+	private static final byte RECORD_PROFILE = 3;
+	private static final byte RECORD_UCD = 4;
+
+	private final @NotNull Path path;
+	private final @NotNull BfDataCache dataCache;
+	private final @NotNull UnofficialCloudData ucd;
+
+	public synchronized void write() {
+		Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+		int records = 0;
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(Instant.now().toEpochMilli());
+
+			RecordWriter record = new RecordWriter();
+
+			ExpiryHolder<BfCloudData> cloudData = dataCache.cloudData.getIfPresent();
+			if (cloudData != null) {
+				writeCloudData(record, cloudData);
+				record.writeTo(out, RECORD_CLOUD_DATA);
+				records++;
+			}
+
+			ObjectList<Map.Entry<UUID, ExpiryHolder<PlayerDataPayload>>> playerDatas = new ObjectArrayList<>();
+			dataCache.playerData.forEachCached((uuid, holder) -> playerDatas.add(Map.entry(uuid, holder)));
+			for (Map.Entry<UUID, ExpiryHolder<PlayerDataPayload>> entry : playerDatas) {
+				PlayerDataPayload payload = entry.getValue().value();
+				writeUuid(record, entry.getKey());
+				record.writeLong(entry.getValue().updated().toEpochMilli());
+				writeString(record, payload.context().name());
+				record.writeInt(payload.data().length);
+				record.write(payload.data());
+				record.writeTo(out, RECORD_PLAYER_DATA);
+				records++;
+			}
+
+			for (Map.Entry<String, MinecraftProfileData.Lookup> entry : MinecraftProfileData.CACHE_BY_NAME.asMap().entrySet()) {
+				MinecraftProfileData profile = entry.getValue().profile().orElse(null);
+				if (profile == null) {
+					// misses are cheap to repeat and may not be misses anymore
+					continue;
+				}
+				writeString(record, entry.getKey());
+				record.writeLong(entry.getValue().lookedUp().toEpochMilli());
+				writeUuid(record, profile.uuid());
+				writeString(record, profile.username());
+				record.writeTo(out, RECORD_PROFILE);
+				records++;
+			}
+
+			if (ucd.getLastRefreshed() != null) {
+				writeUcd(record);
+				record.writeTo(out, RECORD_UCD);
+				records++;
+			}
+		} catch (IOException e) {
+			log.error("failed to write cache snapshot", e);
+			return;
+		}
+
+		try {
+			Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			log.error("failed to replace cache snapshot", e);
+			return;
+		}
+
+		log.info("wrote cache snapshot ({} records)", records);
+	}
+
+	public synchronized void load() {
+		if (!Files.isRegularFile(path)) {
+			return;
+		}
+
+		ByteBuffer buf;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			// the mapping stays valid after the channel closes
+			buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} catch (IOException e) {
+			log.error("failed to map cache snapshot", e);
+			return;
+		}
+
+		Instant written;
+		try {
+			if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+				log.warn("ignoring cache snapshot with unknown format");
+				return;
+			}
+			written = Instant.ofEpochMilli(buf.getLong());
+		} catch (BufferUnderflowException e) {
+			log.warn("ignoring truncated cache snapshot");
+			return;
+		}
+
+		int restored = 0;
+		int skipped = 0;
+		while (buf.hasRemaining()) {
+			ByteBuffer record;
+			byte type;
+			try {
+				type = buf.get();
+				int length = buf.getInt();
+				record = buf.slice(buf.position(), length);
+				buf.position(buf.position() + length);
+			} catch (RuntimeException e) {
+				log.warn("cache snapshot ends in a truncated record");
+				break;
+			}
+
+			try {
+				if (restore(type, record)) {
+					restored++;
+				} else {
+					skipped++;
+				}
+			} catch (Exception e) {
+				log.warn("skipping unreadable cache snapshot record", e);
+				skipped++;
+			}
+		}
+
+		log.info("restored {} cache snapshot records from {} ({} skipped)", restored, written, skipped);
+	}
+
+	private boolean restore(byte type, ByteBuffer record) throws IOException {
+		switch (type) {
+			case RECORD_PLAYER_DATA -> {
+				UUID uuid = readUuid(record);
+				Instant updated = Instant.ofEpochMilli(record.getLong());
+				PlayerDataContext context = PlayerDataContext.valueOf(readString(record));
+				byte[] data = new byte[record.getInt()];
+				record.get(data);
+				return dataCache.playerData.restore(uuid, new PlayerDataPayload(context, data), updated);
+			}
+			case RECORD_CLOUD_DATA -> {
+				Instant updated = Instant.ofEpochMilli(record.getLong());
+				return dataCache.cloudData.restore(readCloudData(record), updated);
+			}
+			case RECORD_PROFILE -> {
+				String lookupName = readString(record);
+				Instant lookedUp = Instant.ofEpochMilli(record.getLong());
+				MinecraftProfileData profile = new MinecraftProfileData(readUuid(record), readString(record));
+				return MinecraftProfileData.restore(lookupName, profile, lookedUp);
+			}
+			case RECORD_UCD -> {
+				return restoreUcd(record);
+			}
+			default -> {
+				return false;
+			}
+		}
+	}
+
+	private static void writeCloudData(RecordWriter record, ExpiryHolder<BfCloudData> holder) throws IOException {
+		BfCloudData cloudData = holder.value();
+		record.writeLong(holder.updated().toEpochMilli());
+		record.writeInt(cloudData.usersOnline());
+		record.writeInt(cloudData.gamePlayerCount().size());
+		for (Map.Entry<String, Integer> entry : cloudData.gamePlayerCount().entrySet()) {
+			writeString(record, entry.getKey());
+			record.writeInt(entry.getValue());
+		}
+		record.writeLong(cloudData.scoreboardResetTime().toEpochMilli());
+		writeScores(record, cloudData.playerScores());
+		writeScores(record, cloudData.clanScores());
+	}
+
+	private static BfCloudData readCloudData(ByteBuffer record) {
+		int usersOnline = record.getInt();
+		int gameCount = record.getInt();
+		Map<String, Integer> gamePlayerCount = new Object2ObjectLinkedOpenHashMap<>(gameCount);
+		for (int i = 0; i < gameCount; i++) {
+			gamePlayerCount.put(readString(record), record.getInt());
+		}
+		Instant scoreboardResetTime = Instant.ofEpochMilli(record.getLong());
+		return new BfCloudData(usersOnline, gamePlayerCount, scoreboardResetTime, readScores(record), readScores(record));
+	}
+
+	private static void writeScores(RecordWriter record, List<ObjectIntImmutablePair<UUID>> scores) throws IOException {
+		record.writeInt(scores.size());
+		for (ObjectIntImmutablePair<UUID> score : scores) {
+			writeUuid(record, score.left());
+			record.writeInt(score.rightInt());
+		}
+	}
+
+	private static List<ObjectIntImmutablePair<UUID>> readScores(ByteBuffer record) {
+		int count = record.getInt();
+		ObjectList<ObjectIntImmutablePair<UUID>> scores = new ObjectArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			scores.add(new ObjectIntImmutablePair<>(readUuid(record), record.getInt()));
+		}
+		return scores;
+	}
+
+	private void writeUcd(RecordWriter record) throws IOException {
+		Instant lastRefreshed;
+		List<UnofficialCloudData.Player> leaderboard;
+		Set<UUID> clanList;
+		synchronized (ucd) {
+			lastRefreshed = ucd.getLastRefreshed();
+			leaderboard = ucd.getPlayerExpLeaderboard().toList();
+			clanList = ucd.getClanList();
+		}
+
+		record.writeLong(lastRefreshed.toEpochMilli());
+		record.writeInt(leaderboard.size());
+		for (UnofficialCloudData.Player player : leaderboard) {
+			writeUuid(record, player.uuid());
+			writeString(record, player.username());
+			record.writeInt(player.exp());
+			record.writeInt(player.prestige());
+			record.writeBoolean(player.isActive());
+		}
+		writeUuids(record, clanList);
+	}
+
+	private boolean restoreUcd(ByteBuffer record) {
+		Instant lastRefreshed = Instant.ofEpochMilli(record.getLong());
+		int count = record.getInt();
+		ObjectList<UnofficialCloudData.Player> leaderboard = new ObjectArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			leaderboard.add(new UnofficialCloudData.Player(
+				readUuid(record),
+				readString(record),
+				record.getInt(),
+				record.getInt(),
+				record.get() != 0
+			));
+		}
+		int clanCount = record.getInt();
+		Set<UUID> clanList = new ObjectOpenHashSet<>(clanCount);
+		for (int i = 0; i < clanCount; i++) {
+			clanList.add(readUuid(record));
+		}
+		return ucd.restore(leaderboard, clanList, lastRefreshed);
+	}
+
+	private static void writeUuids(RecordWriter record, Collection<UUID> uuids) throws IOException {
+		record.writeInt(uuids.size());
+		for (UUID uuid : uuids) {
+			writeUuid(record, uuid);
+		}
+	}
+
+	private static void writeUuid(RecordWriter record, UUID uuid) throws IOException {
+		record.writeLong(uuid.getMostSignificantBits());
+		record.writeLong(uuid.getLeastSignificantBits());
+	}
+
+	private static UUID readUuid(ByteBuffer record) {
+		return new UUID(record.getLong(), record.getLong());
+	}
+
+	private static void writeString(RecordWriter record, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		record.writeInt(bytes.length);
+		record.write(bytes);
+	}
+
+	private static String readString(ByteBuffer record) {
+		byte[] bytes = new byte[record.getInt()];
+		record.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Buffers one record so it can be written with its length in front.
+	 */
+	private static final class RecordWriter extends DataOutputStream {
+		RecordWriter() {
+			super(new ByteArrayOutputStream());
+		}
+
+		void writeTo(DataOutputStream out, byte type) throws IOException {
+			ByteArrayOutputStream bytes = (ByteArrayOutputStream) this.out;
+			out.writeByte(type);
+			out.writeInt(bytes.size());
+			bytes.writeTo(out);
+			bytes.reset();
+			written = 0;
+		}
+	}
+}
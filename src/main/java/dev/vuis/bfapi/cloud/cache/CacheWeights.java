@@ -0,0 +1,47 @@
+package dev.vuis.bfapi.cloud.cache;
+
+import com.boehmod.bflib.cloud.common.AbstractClanData;
+import com.boehmod.bflib.cloud.common.MatchData;
+import com.boehmod.bflib.cloud.common.player.status.PlayerStatus;
+import com.google.common.collect.Iterables;
+import dev.vuis.bfapi.cloud.BfPlayerInventory;
+import dev.vuis.bfapi.cloud.PlayerDataPayload;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Rough retained sizes of cached values in bytes, used to weigh cache entries.
+ * These are estimates from typical object graphs, not measurements.
+ */
+final class CacheWeights {
+	/**
+	 * A boxed UUID plus its hash set or list slot.
+	 */
+	private static final int UUID_BYTES = 64;
+
+	private CacheWeights() {
+	}
+
+	static int clanData(AbstractClanData clan) {
+		return 512 + Iterables.size(clan.getMembers()) * UUID_BYTES;
+	}
+
+	static int itemDefault(Set<UUID> items) {
+		return 128 + items.size() * UUID_BYTES;
+	}
+
+	static int playerData(PlayerDataPayload payload) {
+		// the record, its array header and the bytes
+		return 48 + payload.data().length;
+	}
+
+	static int playerInventory(BfPlayerInventory inventory) {
+		// item stacks carry a UUID, item id and an optional name tag
+		return 512 + Iterables.size(inventory.getItems()) * 160;
+	}
+
+	static int playerStatus(PlayerStatus status) {
+		MatchData matchData = status.getMatchData();
+		return matchData != null ? 512 + Iterables.size(matchData.getPlayers()) * UUID_BYTES : 256;
+	}
+}
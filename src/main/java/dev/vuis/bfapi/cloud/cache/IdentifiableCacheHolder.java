@@ -1,139 +1,362 @@
 package dev.vuis.bfapi.cloud.cache;
 
 import com.boehmod.bflib.cloud.common.RequestType;
-import com.boehmod.bflib.cloud.packet.common.PacketClientRequest;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.gson.stream.JsonWriter;
 import dev.vuis.bfapi.cloud.BfConnection;
+import dev.vuis.bfapi.cloud.CloudDisconnectedException;
+import dev.vuis.bfapi.cloud.UnknownUuidException;
 import dev.vuis.bfapi.util.cache.ExpiryHolder;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectList;
+import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Collection;
-import java.util.EnumSet;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.ToIntFunction;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 /**
+ * Values are kept for {@code staleGrace} past their lifetime, and served while the cloud connection is down.
+ * The cache holds at most {@code maxBytes} of values, as estimated by the holder's weigher. Eviction is
+ * frequency-aware (Caffeine's W-TinyLFU), so one-off lookups from scans can't push out popular entries.
+ * Values that are read late in their lifetime are refreshed in the background while still being served.
+ * UUIDs the cloud fails to answer for are remembered by a {@link NegativeCache} and not requested again for a while.
+ *
  * @apiNote UUID uniqueness when calling {@link #get(Collection)} and {@link #request(Collection, boolean)} is the caller's responsibility
  */
 public class IdentifiableCacheHolder<T> {
 	protected final BfConnection connection;
 	protected final RequestType requestType;
 	protected final Duration lifetime;
+	protected final Duration staleGrace;
 	protected final Cache<UUID, ExpiryHolder<T>> cache;
+	protected final PendingDeadlines deadlines;
+	protected final RefreshAhead refreshAhead;
+	protected final NegativeCache negativeCache;
+	protected final long maxBytes;
+	protected final ToIntFunction<T> weigher;
 
 	protected final Map<UUID, CompletableFuture<ExpiryHolder<T>>> pending = new ConcurrentHashMap<>();
 
-	IdentifiableCacheHolder(BfConnection connection, RequestType requestType, Duration lifetime) {
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder staleHits = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder refreshes = new LongAdder();
+	private final LongAdder negativeHits = new LongAdder();
+
+	IdentifiableCacheHolder(BfConnection connection, RequestType requestType, Duration lifetime, Duration staleGrace, PendingDeadlines deadlines, RefreshAhead refreshAhead, NegativeCache negativeCache, long maxBytes, ToIntFunction<T> weigher) {
 		this.connection = connection;
 		this.requestType = requestType;
 		this.lifetime = lifetime;
-		this.cache = CacheBuilder.newBuilder()
-			.expireAfterWrite(lifetime)
+		this.staleGrace = staleGrace;
+		this.deadlines = deadlines;
+		this.refreshAhead = refreshAhead;
+		this.negativeCache = negativeCache;
+		this.maxBytes = maxBytes;
+		this.weigher = weigher;
+		this.cache = Caffeine.newBuilder()
+			.expireAfterWrite(lifetime.plus(staleGrace))
+			.maximumWeight(maxBytes)
+			.<UUID, ExpiryHolder<T>>weigher((_, holder) -> weigher.applyAsInt(holder.value()))
+			.recordStats()
 			.build();
 	}
 
+	/**
+	 * Concurrent misses for the same UUID share one pending future and one cloud request.
+	 *
+	 * @return the fresh cached value or a pending request for it; a recent failure for an uncached UUID, which is an
+	 * {@link UnknownUuidException} for UUIDs known to be unknown; while disconnected, a stale value or a
+	 * {@link CloudDisconnectedException} failure
+	 */
 	public CompletableFuture<ExpiryHolder<T>> get(UUID uuid) {
 		ExpiryHolder<T> cached = cache.getIfPresent(uuid);
-		if (cached != null) {
+		if (cached != null && !cached.isExpired()) {
+			hits.increment();
+			refreshIfDue(uuid, cached);
 			return CompletableFuture.completedFuture(cached);
 		}
+		if (cached == null) {
+			Exception failure = negativeCache.check(uuid);
+			if (failure != null) {
+				negativeHits.increment();
+				return CompletableFuture.failedFuture(failure);
+			}
+		}
+		if (!connection.isConnectedAndVerified()) {
+			if (cached != null) {
+				staleHits.increment();
+				return CompletableFuture.completedFuture(cached);
+			}
+			return CompletableFuture.failedFuture(new CloudDisconnectedException());
+		}
 
-		CompletableFuture<ExpiryHolder<T>> pendingFuture = pending.get(uuid);
+		CompletableFuture<ExpiryHolder<T>> newFuture = new CompletableFuture<>();
+		CompletableFuture<ExpiryHolder<T>> pendingFuture = pending.putIfAbsent(uuid, newFuture);
 		if (pendingFuture != null) {
+			coalesced.increment();
 			return pendingFuture;
 		}
 
-		CompletableFuture<ExpiryHolder<T>> newFuture = new CompletableFuture<>();
-		newFuture.whenComplete((_, _) -> pending.remove(uuid));
-		pending.put(uuid, newFuture);
-
-		request(uuid, false);
+		if (startPending(uuid, newFuture)) {
+			request(uuid, true);
+		}
 
 		return newFuture;
 	}
 
 	public Map<UUID, CompletableFuture<ExpiryHolder<T>>> get(Collection<UUID> uuids) {
 		Map<UUID, CompletableFuture<ExpiryHolder<T>>> futures = new Object2ObjectOpenHashMap<>(uuids.size());
+		boolean connected = connection.isConnectedAndVerified();
+		ObjectList<UUID> requestUuids = new ObjectArrayList<>();
 
 		for (UUID uuid : uuids) {
 			ExpiryHolder<T> cached = cache.getIfPresent(uuid);
-			if (cached != null) {
+			if (cached != null && !cached.isExpired()) {
+				hits.increment();
+				refreshIfDue(uuid, cached);
 				futures.put(uuid, CompletableFuture.completedFuture(cached));
 				continue;
 			}
+			if (cached == null) {
+				Exception failure = negativeCache.check(uuid);
+				if (failure != null) {
+					negativeHits.increment();
+					futures.put(uuid, CompletableFuture.failedFuture(failure));
+					continue;
+				}
+			}
+			if (!connected) {
+				if (cached != null) {
+					staleHits.increment();
+					futures.put(uuid, CompletableFuture.completedFuture(cached));
+				} else {
+					futures.put(uuid, CompletableFuture.failedFuture(new CloudDisconnectedException()));
+				}
+				continue;
+			}
 
-			CompletableFuture<ExpiryHolder<T>> pendingFuture = pending.get(uuid);
+			CompletableFuture<ExpiryHolder<T>> newFuture = new CompletableFuture<>();
+			CompletableFuture<ExpiryHolder<T>> pendingFuture = pending.putIfAbsent(uuid, newFuture);
 			if (pendingFuture != null) {
+				coalesced.increment();
 				futures.put(uuid, pendingFuture);
 				continue;
 			}
 
-			CompletableFuture<ExpiryHolder<T>> newFuture = new CompletableFuture<>();
-			pending.put(uuid, newFuture);
-
 			futures.put(uuid, newFuture);
+			if (startPending(uuid, newFuture)) {
+				requestUuids.add(uuid);
+			}
 		}
 
-		request(uuids, false);
+		if (!requestUuids.isEmpty()) {
+			request(requestUuids, true);
+		}
 
 		return futures;
 	}
 
+	/**
+	 * Sets up a future this thread just registered as pending.
+	 *
+	 * @return whether the value still has to be requested
+	 */
+	private boolean startPending(UUID uuid, CompletableFuture<ExpiryHolder<T>> future) {
+		// timeouts aren't negatively cached, since one lost packet says nothing about the UUID;
+		// complete(UUID, Exception) records cloud errors itself
+		future.whenComplete((_, _) -> pending.remove(uuid, future));
+
+		// a response may have landed between the cache lookup and registration
+		ExpiryHolder<T> cached = cache.getIfPresent(uuid);
+		if (cached != null && !cached.isExpired()) {
+			hits.increment();
+			future.complete(cached);
+			return false;
+		}
+
+		deadlines.track(future, () -> request(uuid, true), requestType + " request for " + uuid);
+		return true;
+	}
+
+	/**
+	 * Re-requests a fresh value that is being read late in its lifetime. Callers keep getting {@code cached}
+	 * until the response arrives; if it expires first, they join the refresh's pending future.
+	 */
+	private void refreshIfDue(UUID uuid, ExpiryHolder<T> cached) {
+		if (!refreshAhead.isDue(cached, lifetime) || pending.containsKey(uuid) || !connection.isConnectedAndVerified()) {
+			return;
+		}
+		if (!refreshAhead.tryStart()) {
+			return;
+		}
+
+		CompletableFuture<ExpiryHolder<T>> future = new CompletableFuture<>();
+		if (pending.putIfAbsent(uuid, future) != null) {
+			return;
+		}
+		future.whenComplete((_, _) -> pending.remove(uuid, future));
+		deadlines.track(future, () -> request(uuid, true), requestType + " refresh for " + uuid);
+		refreshes.increment();
+
+		request(uuid, true);
+	}
+
+	/**
+	 * @return the cached value, which may be stale
+	 */
 	public @Nullable ExpiryHolder<T> getIfPresent(UUID uuid) {
 		return cache.getIfPresent(uuid);
 	}
 
+	/**
+	 * Calls {@code action} for every cached value, including stale ones.
+	 */
+	public void forEachCached(BiConsumer<UUID, ExpiryHolder<T>> action) {
+		cache.asMap().forEach(action);
+	}
+
+	/**
+	 * Caches a value restored from a snapshot, unless the UUID already has one. The value keeps its original receive
+	 * time and expiry, so one past its lifetime is served as stale and revalidated.
+	 *
+	 * @param updated when the value was originally received
+	 * @return whether the value was restored
+	 */
+	public boolean restore(UUID uuid, T data, Instant updated) {
+		Instant now = Instant.now();
+		if (updated.plus(lifetime).plus(staleGrace).isBefore(now)) {
+			return false;
+		}
+		return cache.asMap().putIfAbsent(uuid, new ExpiryHolder<>(data, updated, updated.plus(lifetime))) == null;
+	}
+
+	/**
+	 * Drops {@code holder} if it is still the cached value for {@code uuid}.
+	 */
+	public void invalidate(UUID uuid, ExpiryHolder<T> holder) {
+		cache.asMap().remove(uuid, holder);
+	}
+
 	public void request(UUID uuid, boolean override) {
-		if (!override && cache.asMap().containsKey(uuid)) {
+		if (!override && isFresh(uuid)) {
 			return;
 		}
 
-		connection.sendPacket(new PacketClientRequest(
-			EnumSet.noneOf(RequestType.class),
-			ObjectList.of(Map.entry(uuid, EnumSet.of(requestType)))
-		));
+		requests.increment();
+		connection.requestBatcher.request(uuid, requestType);
 	}
 
 	public void request(Collection<UUID> uuids, boolean override) {
-		ObjectList<Map.Entry<UUID, EnumSet<RequestType>>> requestEntries = new ObjectArrayList<>();
+		ObjectList<UUID> requestUuids = new ObjectArrayList<>();
 
 		for (UUID uuid : uuids) {
-			if (!override && cache.asMap().containsKey(uuid)) {
+			if (!override && isFresh(uuid)) {
 				continue;
 			}
 
-			requestEntries.add(Map.entry(uuid, EnumSet.of(requestType)));
+			requestUuids.add(uuid);
 		}
 
-		if (requestEntries.isEmpty()) {
+		if (requestUuids.isEmpty()) {
 			return;
 		}
 
-		connection.sendPacket(new PacketClientRequest(
-			EnumSet.noneOf(RequestType.class),
-			requestEntries
-		));
+		requests.add(requestUuids.size());
+		connection.requestBatcher.request(requestUuids, requestType);
 	}
 
-	public void complete(UUID uuid, T data) {
-		ExpiryHolder<T> holder = new ExpiryHolder<>(data, Instant.now().plus(lifetime));
+	/**
+	 * @param data the value, or {@code null} if the cloud doesn't know {@code uuid}
+	 */
+	public void complete(UUID uuid, @Nullable T data) {
+		if (data == null) {
+			complete(uuid, new UnknownUuidException(uuid));
+			return;
+		}
+
+		negativeCache.recordSuccess(uuid);
+
+		Instant now = Instant.now();
+		ExpiryHolder<T> holder = new ExpiryHolder<>(data, now, now.plus(lifetime));
+
+		// cache before completing, so callers never miss both the value and the pending request
+		cache.put(uuid, holder);
 
 		CompletableFuture<ExpiryHolder<T>> future = pending.get(uuid);
 		if (future != null) {
 			future.complete(holder);
 		}
+	}
+
+	private boolean isFresh(UUID uuid) {
+		ExpiryHolder<T> cached = cache.getIfPresent(uuid);
+		return cached != null && !cached.isExpired();
+	}
+
+	/**
+	 * Evicts expired values now rather than on a later access.
+	 */
+	public void cleanUp() {
+		cache.cleanUp();
+	}
+
+	public void serializeStats(@NotNull JsonWriter w) throws IOException {
+		long estimatedBytes = 0;
+		for (ExpiryHolder<T> holder : cache.asMap().values()) {
+			estimatedBytes += weigher.applyAsInt(holder.value());
+		}
 
-		cache.put(uuid, holder);
+		w.beginObject();
+
+		CacheStats cacheStats = cache.stats();
+
+		w.name("entries").value(cache.estimatedSize());
+		w.name("estimated_bytes").value(estimatedBytes);
+		w.name("max_bytes").value(maxBytes);
+		// lookups as seen by the eviction policy, including name lookups for stubs
+		w.name("hit_ratio").value(cacheStats.hitRate());
+		w.name("evictions").value(cacheStats.evictionCount());
+		w.name("evicted_bytes").value(cacheStats.evictionWeight());
+
+		w.name("hits").value(hits.sum());
+		w.name("stale_hits").value(staleHits.sum());
+		w.name("coalesced").value(coalesced.sum());
+		w.name("requests").value(requests.sum());
+		w.name("refreshes").value(refreshes.sum());
+		w.name("negative_hits").value(negativeHits.sum());
+		w.name("recent_failures").value(negativeCache.failureCount());
+		w.name("pending").value(pending.size());
+		deadlines.serializeStats(w);
+		serializeExtraStats(w);
+
+		w.endObject();
+	}
+
+	/**
+	 * Writes subclass-specific stats into the holder's stats object.
+	 */
+	protected void serializeExtraStats(@NotNull JsonWriter w) throws IOException {
 	}
 
 	public void complete(UUID uuid, Exception e) {
+		// a failed refresh of a cached value says nothing about whether the UUID exists
+		if (cache.getIfPresent(uuid) == null) {
+			negativeCache.recordFailure(uuid, e);
+		}
+
 		CompletableFuture<ExpiryHolder<T>> future = pending.get(uuid);
 		if (future != null) {
 			future.completeExceptionally(e);
@@ -0,0 +1,103 @@
+package dev.vuis.bfapi.cloud.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import dev.vuis.bfapi.cloud.UnknownUuidException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Remembers UUIDs the cloud failed to answer for, so repeated lookups fail without a cloud request.
+ * <p>
+ * A failure is replayed for {@code ttl}. A UUID the cloud reports as unknown is also remembered for {@code rotation},
+ * and rejected for as long as it is. A bloom filter screens lookups before that exact set is consulted, so a false
+ * positive only costs a lookup and never rejects a real player. The filter rotates every {@code rotation}, or
+ * sooner once it holds {@code expectedUnknown} UUIDs, so floods of random UUIDs can't saturate it.
+ */
+final class NegativeCache {
+	private static final double FALSE_POSITIVE_RATE = 0.001;
+	@SuppressWarnings("UnstableApiUsage")
+	private static final Funnel<UUID> UUID_FUNNEL = (uuid, into) -> into
+		.putLong(uuid.getMostSignificantBits())
+		.putLong(uuid.getLeastSignificantBits());
+
+	private final int expectedUnknown;
+	private final Duration rotation;
+	private final Cache<UUID, Exception> failures;
+	private final Cache<UUID, Boolean> confirmedUnknown;
+
+	private volatile BloomFilter<UUID> unknown;
+	private volatile BloomFilter<UUID> previousUnknown;
+	private volatile Instant rotatedAt = Instant.now();
+
+	NegativeCache(Duration ttl, int expectedUnknown, Duration rotation) {
+		this.expectedUnknown = expectedUnknown;
+		this.rotation = rotation;
+		this.failures = Caffeine.newBuilder()
+			.expireAfterWrite(ttl)
+			.maximumSize(expectedUnknown)
+			.build();
+		this.confirmedUnknown = Caffeine.newBuilder()
+			.expireAfterWrite(rotation)
+			.maximumSize(expectedUnknown)
+			.build();
+		this.unknown = newFilter();
+		this.previousUnknown = newFilter();
+	}
+
+	/**
+	 * @return the failure to answer {@code uuid} with, or {@code null} if it should be requested
+	 */
+	@Nullable Exception check(UUID uuid) {
+		Exception failure = failures.getIfPresent(uuid);
+		if (failure != null) {
+			return failure;
+		}
+		if ((unknown.mightContain(uuid) || previousUnknown.mightContain(uuid)) && confirmedUnknown.getIfPresent(uuid) != null) {
+			return new UnknownUuidException(uuid);
+		}
+		return null;
+	}
+
+	void recordFailure(UUID uuid, Exception cause) {
+		failures.put(uuid, cause);
+		if (cause instanceof UnknownUuidException) {
+			markUnknown(uuid);
+		}
+	}
+
+	void recordSuccess(UUID uuid) {
+		failures.invalidate(uuid);
+		confirmedUnknown.invalidate(uuid);
+	}
+
+	long failureCount() {
+		return failures.estimatedSize();
+	}
+
+	private void markUnknown(UUID uuid) {
+		confirmedUnknown.put(uuid, Boolean.TRUE);
+		if (shouldRotate()) {
+			synchronized (this) {
+				if (shouldRotate()) {
+					previousUnknown = unknown;
+					unknown = newFilter();
+					rotatedAt = Instant.now();
+				}
+			}
+		}
+		unknown.put(uuid);
+	}
+
+	private boolean shouldRotate() {
+		return unknown.approximateElementCount() >= expectedUnknown || Instant.now().isAfter(rotatedAt.plus(rotation));
+	}
+
+	private BloomFilter<UUID> newFilter() {
+		return BloomFilter.create(UUID_FUNNEL, expectedUnknown, FALSE_POSITIVE_RATE);
+	}
+}
@@ -0,0 +1,69 @@
+package dev.vuis.bfapi.cloud.cache;
+
+import com.google.gson.stream.JsonWriter;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Puts a deadline on a cache holder's pending cloud requests. An unanswered request is re-sent up to
+ * {@code maxRetries} times, then its future fails with a {@link TimeoutException}.
+ */
+@Slf4j
+final class PendingDeadlines {
+	private final Timer timer;
+	private final long timeoutMillis;
+	private final int maxRetries;
+
+	private final LongAdder retries = new LongAdder();
+	private final LongAdder timeouts = new LongAdder();
+
+	PendingDeadlines(Timer timer, Duration timeout, int maxRetries) {
+		this.timer = timer;
+		this.timeoutMillis = timeout.toMillis();
+		this.maxRetries = maxRetries;
+	}
+
+	/**
+	 * @param resend sends the request again
+	 * @param description what is being requested, for logging
+	 */
+	void track(CompletableFuture<?> future, Runnable resend, String description) {
+		track(future, resend, description, 0);
+	}
+
+	private void track(CompletableFuture<?> future, Runnable resend, String description, int attempt) {
+		Timeout timeout = timer.newTimeout(_ -> {
+			if (future.isDone()) {
+				return;
+			}
+
+			if (attempt < maxRetries) {
+				retries.increment();
+				log.debug("{} not answered within {} ms; retrying", description, timeoutMillis);
+				track(future, resend, description, attempt + 1);
+				resend.run();
+			} else {
+				timeouts.increment();
+				log.warn("{} not answered after {} attempts; giving up", description, attempt + 1);
+				future.completeExceptionally(new TimeoutException(description + " timed out"));
+			}
+		}, timeoutMillis, TimeUnit.MILLISECONDS);
+		future.whenComplete((_, _) -> timeout.cancel());
+	}
+
+	/**
+	 * Writes the retry and timeout counts into the current object.
+	 */
+	void serializeStats(@NotNull JsonWriter w) throws IOException {
+		w.name("retries").value(retries.sum());
+		w.name("timeouts").value(timeouts.sum());
+	}
+}
@@ -0,0 +1,269 @@
+package dev.vuis.bfapi.cloud.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.gson.stream.JsonWriter;
+import dev.vuis.bfapi.cloud.BfPlayerData;
+import dev.vuis.bfapi.cloud.PlayerDataPayload;
+import dev.vuis.bfapi.cloud.PlayerSummary;
+import dev.vuis.bfapi.util.cache.ExpiryHolder;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Caches player data as the payload bytes the cloud sent, and decodes it into {@link BfPlayerData} only when read.
+ * Recently decoded values are kept in a small cache, so hot players aren't decoded on every read.
+ * Decodes for futures run on the decode executor, off the event loops shared by HTTP and the cloud connection.
+ * A payload that fails to decode is dropped, so the next read requests it again.
+ */
+public class PlayerDataCacheHolder {
+	private final IdentifiableCacheHolder<PlayerDataPayload> payloads;
+	private final Cache<UUID, Decoded> decoded;
+	/**
+	 * Usernames by the payload they were read from; weak keys compare by identity and drop out with the payload.
+	 */
+	private final Cache<ExpiryHolder<PlayerDataPayload>, String> names = Caffeine.newBuilder()
+		.weakKeys()
+		.build();
+
+	private volatile @Nullable BiConsumer<PlayerSummary, Instant> decodeListener = null;
+	private volatile Executor decodeExecutor = ForkJoinPool.commonPool();
+
+	private final LongAdder decodes = new LongAdder();
+	private final LongAdder decodedHits = new LongAdder();
+	private final LongAdder decodeFailures = new LongAdder();
+
+	PlayerDataCacheHolder(IdentifiableCacheHolder<PlayerDataPayload> payloads, int maxDecoded) {
+		this.payloads = payloads;
+		this.decoded = Caffeine.newBuilder()
+			.maximumSize(maxDecoded)
+			.build();
+	}
+
+	/**
+	 * @see IdentifiableCacheHolder#get(UUID)
+	 */
+	public CompletableFuture<ExpiryHolder<BfPlayerData>> get(UUID uuid) {
+		return decode(uuid, payloads.get(uuid));
+	}
+
+	/**
+	 * @see IdentifiableCacheHolder#get(Collection)
+	 */
+	public Map<UUID, CompletableFuture<ExpiryHolder<BfPlayerData>>> get(Collection<UUID> uuids) {
+		Map<UUID, CompletableFuture<ExpiryHolder<PlayerDataPayload>>> payloadFutures = payloads.get(uuids);
+		Map<UUID, CompletableFuture<ExpiryHolder<BfPlayerData>>> futures = new Object2ObjectOpenHashMap<>(payloadFutures.size());
+		for (Map.Entry<UUID, CompletableFuture<ExpiryHolder<PlayerDataPayload>>> entry : payloadFutures.entrySet()) {
+			futures.put(entry.getKey(), decode(entry.getKey(), entry.getValue()));
+		}
+		return futures;
+	}
+
+	/**
+	 * Like {@link #get(Collection)}, but projects each value to a {@link PlayerSummary}. Values decoded for this are
+	 * dropped right away rather than cached, so bulk scans neither hold full objects nor push out hot players.
+	 */
+	public Map<UUID, CompletableFuture<PlayerSummary>> getSummaries(Collection<UUID> uuids) {
+		Map<UUID, CompletableFuture<ExpiryHolder<PlayerDataPayload>>> payloadFutures = payloads.get(uuids);
+		Map<UUID, CompletableFuture<PlayerSummary>> futures = new Object2ObjectOpenHashMap<>(payloadFutures.size());
+		for (Map.Entry<UUID, CompletableFuture<ExpiryHolder<PlayerDataPayload>>> entry : payloadFutures.entrySet()) {
+			UUID uuid = entry.getKey();
+			futures.put(uuid, whenDone(uuid, entry.getValue(), payload -> summarize(uuid, payload)));
+		}
+		return futures;
+	}
+
+	/**
+	 * @return the decoded cached value, which may be stale, or {@code null} if there is none or it can't be decoded
+	 */
+	public @Nullable ExpiryHolder<BfPlayerData> getIfPresent(UUID uuid) {
+		ExpiryHolder<PlayerDataPayload> payload = payloads.getIfPresent(uuid);
+		if (payload == null) {
+			return null;
+		}
+		try {
+			return decode(uuid, payload);
+		} catch (UncheckedIOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Looks up a cached player's username, which may be stale. Each payload is decoded for its name at most once,
+	 * and that decode neither enters the decoded cache nor reaches the decode listener, so building stubs for many
+	 * players stays cheap.
+	 *
+	 * @return the username, or {@code null} if there is no cached value or it can't be decoded
+	 */
+	public @Nullable String getCachedName(UUID uuid) {
+		ExpiryHolder<PlayerDataPayload> payload = payloads.getIfPresent(uuid);
+		if (payload == null) {
+			return null;
+		}
+		String name = names.getIfPresent(payload);
+		if (name != null) {
+			return name;
+		}
+		Decoded cached = decoded.getIfPresent(uuid);
+		if (cached != null && cached.payload() == payload) {
+			name = cached.holder().value().getUsername();
+		} else {
+			try {
+				name = decodeUncached(uuid, payload).getUsername();
+			} catch (UncheckedIOException e) {
+				return null;
+			}
+		}
+		names.put(payload, name);
+		return name;
+	}
+
+	/**
+	 * Sets a listener called with every value decoded, along with when it was received.
+	 */
+	public void setDecodeListener(@Nullable BiConsumer<PlayerSummary, Instant> listener) {
+		decodeListener = listener;
+	}
+
+	/**
+	 * Sets the executor that decodes values for futures; defaults to the common pool.
+	 */
+	public void setDecodeExecutor(@NotNull Executor executor) {
+		decodeExecutor = executor;
+	}
+
+	/**
+	 * Calls {@code action} for every cached payload, including stale ones.
+	 */
+	public void forEachCached(BiConsumer<UUID, ExpiryHolder<PlayerDataPayload>> action) {
+		payloads.forEachCached(action);
+	}
+
+	/**
+	 * @see IdentifiableCacheHolder#restore(UUID, Object, Instant)
+	 */
+	public boolean restore(UUID uuid, PlayerDataPayload payload, Instant updated) {
+		return payloads.restore(uuid, payload, updated);
+	}
+
+	public void request(UUID uuid, boolean override) {
+		payloads.request(uuid, override);
+	}
+
+	public void request(Collection<UUID> uuids, boolean override) {
+		payloads.request(uuids, override);
+	}
+
+	public void complete(UUID uuid, @Nullable PlayerDataPayload payload) {
+		payloads.complete(uuid, payload);
+	}
+
+	public void complete(UUID uuid, Exception e) {
+		payloads.complete(uuid, e);
+	}
+
+	public void cleanUp() {
+		payloads.cleanUp();
+		decoded.cleanUp();
+		names.cleanUp();
+	}
+
+	public void serializeStats(@NotNull JsonWriter w) throws IOException {
+		payloads.serializeStats(w);
+	}
+
+	public void serializeDecodedStats(@NotNull JsonWriter w) throws IOException {
+		w.beginObject();
+
+		w.name("entries").value(decoded.estimatedSize());
+		w.name("hits").value(decodedHits.sum());
+		w.name("decodes").value(decodes.sum());
+		w.name("decode_failures").value(decodeFailures.sum());
+
+		w.endObject();
+	}
+
+	private CompletableFuture<ExpiryHolder<BfPlayerData>> decode(UUID uuid, CompletableFuture<ExpiryHolder<PlayerDataPayload>> future) {
+		return whenDone(uuid, future, payload -> decode(uuid, payload));
+	}
+
+	/**
+	 * Applies {@code fn} inline when the payload has already been decoded, and on the decode executor otherwise,
+	 * since the caller may be an event loop.
+	 */
+	private <R> CompletableFuture<R> whenDone(UUID uuid, CompletableFuture<ExpiryHolder<PlayerDataPayload>> future, Function<ExpiryHolder<PlayerDataPayload>, R> fn) {
+		if (future.isDone() && !future.isCompletedExceptionally()) {
+			Decoded cached = decoded.getIfPresent(uuid);
+			if (cached != null && cached.payload() == future.join()) {
+				return future.thenApply(fn);
+			}
+		}
+		return future.thenApplyAsync(fn, decodeExecutor);
+	}
+
+	private PlayerSummary summarize(UUID uuid, ExpiryHolder<PlayerDataPayload> payload) {
+		Decoded cached = decoded.getIfPresent(uuid);
+		if (cached != null && cached.payload() == payload) {
+			decodedHits.increment();
+			return PlayerSummary.of(cached.holder().value());
+		}
+		PlayerSummary summary = PlayerSummary.of(decodeUncached(uuid, payload));
+		names.put(payload, summary.username());
+		BiConsumer<PlayerSummary, Instant> listener = decodeListener;
+		if (listener != null) {
+			listener.accept(summary, payload.updated());
+		}
+		return summary;
+	}
+
+	/**
+	 * Decodes a payload, or reuses the value last decoded from it. The decoded holder keeps the payload's times,
+	 * and stays the same object while it is cached, so response caching keyed on it keeps working.
+	 */
+	private ExpiryHolder<BfPlayerData> decode(UUID uuid, ExpiryHolder<PlayerDataPayload> payload) {
+		Decoded cached = decoded.getIfPresent(uuid);
+		if (cached != null && cached.payload() == payload) {
+			decodedHits.increment();
+			return cached.holder();
+		}
+
+		BfPlayerData data = decodeUncached(uuid, payload);
+		ExpiryHolder<BfPlayerData> holder = new ExpiryHolder<>(data, payload.updated(), payload.expires());
+		decoded.put(uuid, new Decoded(payload, holder));
+		names.put(payload, data.getUsername());
+		BiConsumer<PlayerSummary, Instant> listener = decodeListener;
+		if (listener != null) {
+			listener.accept(PlayerSummary.of(data), payload.updated());
+		}
+		return holder;
+	}
+
+	private BfPlayerData decodeUncached(UUID uuid, ExpiryHolder<PlayerDataPayload> payload) {
+		try {
+			BfPlayerData data = payload.value().decode(uuid);
+			decodes.increment();
+			return data;
+		} catch (IOException e) {
+			decodeFailures.increment();
+			// left cached, the payload would stay fresh and fail every read until it expired
+			payloads.invalidate(uuid, payload);
+			throw new UncheckedIOException("failed to read player data for " + uuid, e);
+		}
+	}
+
+	private record Decoded(ExpiryHolder<PlayerDataPayload> payload, ExpiryHolder<BfPlayerData> holder) {
+	}
+}
@@ -0,0 +1,59 @@
+package dev.vuis.bfapi.cloud.cache;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.gson.stream.JsonWriter;
+import dev.vuis.bfapi.util.cache.ExpiryHolder;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.LongAdder;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Decides when a value that is still being read should be re-requested ahead of its expiry.
+ * Refreshes from all holders share one rate limit, so a burst of hot keys can't flood the cloud.
+ */
+final class RefreshAhead {
+	private final double lifetimeFraction;
+	private final RateLimiter budget;
+
+	private final LongAdder started = new LongAdder();
+	private final LongAdder throttled = new LongAdder();
+
+	/**
+	 * @param lifetimeFraction how far into its lifetime a value may get before being refreshed; {@code 1} or more disables refresh-ahead
+	 */
+	RefreshAhead(double lifetimeFraction, double refreshesPerSecond) {
+		this.lifetimeFraction = lifetimeFraction;
+		this.budget = RateLimiter.create(refreshesPerSecond);
+	}
+
+	boolean isDue(ExpiryHolder<?> holder, Duration lifetime) {
+		if (lifetimeFraction >= 1) {
+			return false;
+		}
+		Duration refreshAfter = Duration.ofMillis((long) (lifetime.toMillis() * lifetimeFraction));
+		return Instant.now().isAfter(holder.updated().plus(refreshAfter));
+	}
+
+	/**
+	 * @return whether the refresh budget allows another refresh now
+	 */
+	boolean tryStart() {
+		if (budget.tryAcquire()) {
+			started.increment();
+			return true;
+		}
+		throttled.increment();
+		return false;
+	}
+
+	void serializeStats(@NotNull JsonWriter w) throws IOException {
+		w.beginObject();
+
+		w.name("started").value(started.sum());
+		w.name("throttled").value(throttled.sum());
+
+		w.endObject();
+	}
+}
@@ -0,0 +1,44 @@
+package dev.vuis.bfapi.cloud.cache;
+
+import io.netty.util.Timeout;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Assembles one value the cloud sends in numbered sections, completing it once no section has arrived for the quiet
+ * period. Without an instance, sections are dropped instead, and the value is requested again once quiet.
+ */
+@RequiredArgsConstructor
+final class SectionAccumulator<T> {
+	private final AccumulatedCacheHolder<T> holder;
+	private final UUID uuid;
+	private final @Nullable T instance;
+
+	private @Nullable Timeout quietTimeout = null;
+
+	synchronized void supply(Consumer<T> mutator) {
+		if (instance != null) {
+			mutator.accept(instance);
+		}
+
+		if (quietTimeout != null) {
+			quietTimeout.cancel();
+		}
+		quietTimeout = holder.timer.newTimeout(_ -> onQuiet(), AccumulatedCacheHolder.QUIET_PERIOD.toNanos(), TimeUnit.NANOSECONDS);
+	}
+
+	private void onQuiet() {
+		// retire before completing, so a section arriving now starts a new value rather than changing this one
+		holder.retire(uuid, this);
+
+		// complete outside the lock; completion runs the waiting callers' continuations
+		if (instance == null) {
+			holder.dropped(uuid);
+		} else {
+			holder.assembled(uuid, instance);
+		}
+	}
+}
@@ -1,76 +1,146 @@
 package dev.vuis.bfapi.cloud.cache;
 
 import com.boehmod.bflib.cloud.common.RequestType;
-import com.boehmod.bflib.cloud.packet.common.PacketClientRequest;
+import com.google.gson.stream.JsonWriter;
 import dev.vuis.bfapi.cloud.BfConnection;
+import dev.vuis.bfapi.cloud.CloudDisconnectedException;
 import dev.vuis.bfapi.util.cache.ExpiryHolder;
-import it.unimi.dsi.fastutil.objects.ObjectList;
+import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.EnumSet;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 @RequiredArgsConstructor(access = AccessLevel.PACKAGE)
 public class SingletonCacheHolder<T> {
 	private final BfConnection connection;
 	private final RequestType requestType;
 	private final Duration lifetime;
+	private final Duration staleGrace;
+	private final PendingDeadlines deadlines;
+	private final RefreshAhead refreshAhead;
 
 	private final AtomicReference<ExpiryHolder<T>> currentValue = new AtomicReference<>();
-	private final AtomicReference<Instant> lastUpdated = new AtomicReference<>();
 	private final AtomicReference<CompletableFuture<ExpiryHolder<T>>> pending = new AtomicReference<>();
 
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder staleHits = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder refreshes = new LongAdder();
+
+	/**
+	 * @return the fresh value or a pending request for it; while disconnected, a value at most {@code staleGrace}
+	 * past its lifetime or a {@link CloudDisconnectedException} failure
+	 */
 	public CompletableFuture<ExpiryHolder<T>> get() {
 		ExpiryHolder<T> value = currentValue.get();
-		Instant lastUpdatedNow = lastUpdated.get();
-		if (value != null && Duration.between(lastUpdatedNow, Instant.now()).compareTo(lifetime) < 0) {
+		if (value != null && !value.isExpired()) {
+			hits.increment();
+			refreshIfDue(value);
 			return CompletableFuture.completedFuture(value);
 		}
+		if (!connection.isConnectedAndVerified()) {
+			if (value != null && Instant.now().isBefore(value.updated().plus(lifetime).plus(staleGrace))) {
+				staleHits.increment();
+				return CompletableFuture.completedFuture(value);
+			}
+			return CompletableFuture.failedFuture(new CloudDisconnectedException());
+		}
 
-		CompletableFuture<ExpiryHolder<T>> pendingNow = pending.get();
+		CompletableFuture<ExpiryHolder<T>> future = new CompletableFuture<>();
+		CompletableFuture<ExpiryHolder<T>> pendingNow = pending.compareAndExchange(null, future);
 		if (pendingNow != null) {
+			coalesced.increment();
 			return pendingNow;
 		}
 
+		startPending(future, requestType + " request");
+
+		return future;
+	}
+
+	private void refreshIfDue(ExpiryHolder<T> value) {
+		if (!refreshAhead.isDue(value, lifetime) || pending.get() != null || !connection.isConnectedAndVerified()) {
+			return;
+		}
+		if (!refreshAhead.tryStart()) {
+			return;
+		}
+
 		CompletableFuture<ExpiryHolder<T>> future = new CompletableFuture<>();
 		if (pending.compareAndSet(null, future)) {
-			request();
+			refreshes.increment();
+			startPending(future, requestType + " refresh");
+		}
+	}
 
-			return future;
-		} else {
-			return pending.get();
+	private void startPending(CompletableFuture<ExpiryHolder<T>> future, String description) {
+		future.whenComplete((_, _) -> pending.compareAndSet(future, null));
+		deadlines.track(future, this::request, description);
+		request();
+	}
+
+	/**
+	 * @return the current value, which may be stale
+	 */
+	public @Nullable ExpiryHolder<T> getIfPresent() {
+		return currentValue.get();
+	}
+
+	/**
+	 * Sets a value restored from a snapshot, unless one has been received already.
+	 *
+	 * @see IdentifiableCacheHolder#restore(java.util.UUID, Object, Instant)
+	 */
+	public boolean restore(T data, Instant updated) {
+		Instant now = Instant.now();
+		if (updated.plus(lifetime).plus(staleGrace).isBefore(now)) {
+			return false;
 		}
+		return currentValue.compareAndSet(null, new ExpiryHolder<>(data, updated, updated.plus(lifetime)));
 	}
 
 	public void request() {
-		connection.sendPacket(new PacketClientRequest(
-			EnumSet.of(requestType),
-			ObjectList.of()
-		));
+		requests.increment();
+		connection.requestBatcher.request(requestType);
 	}
 
 	public void complete(T data) {
 		Instant now = Instant.now();
-		ExpiryHolder<T> holder = new ExpiryHolder<>(data, now.plus(lifetime));
+		ExpiryHolder<T> holder = new ExpiryHolder<>(data, now, now.plus(lifetime));
+
+		currentValue.set(holder);
 
 		CompletableFuture<ExpiryHolder<T>> pendingNow = pending.get();
 		if (pendingNow != null) {
 			pendingNow.complete(holder);
-			pending.set(null);
 		}
-
-		currentValue.set(holder);
-		lastUpdated.set(now);
 	}
 
 	public void complete(Exception e) {
 		CompletableFuture<ExpiryHolder<T>> pendingNow = pending.get();
 		if (pendingNow != null) {
 			pendingNow.completeExceptionally(e);
-			pending.set(null);
 		}
 	}
+
+	public void serializeStats(@NotNull JsonWriter w) throws IOException {
+		w.beginObject();
+
+		w.name("hits").value(hits.sum());
+		w.name("stale_hits").value(staleHits.sum());
+		w.name("coalesced").value(coalesced.sum());
+		w.name("requests").value(requests.sum());
+		w.name("refreshes").value(refreshes.sum());
+		w.name("pending").value(pending.get() != null ? 1 : 0);
+		deadlines.serializeStats(w);
+
+		w.endObject();
+	}
 }
@@ -0,0 +1,328 @@
+package dev.vuis.bfapi.cloud.unofficial;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Players ordered by descending total EXP, held in a treap that tracks subtree sizes. Updating a player, finding a
+ * player's rank and reading a window of {@code k} players all take {@code O(log n)} expected time, plus {@code O(k)}
+ * for the window.
+ */
+public final class ExpLeaderboard {
+	private static final Comparator<UnofficialCloudData.Player> ORDER = Comparator
+		.comparingInt(UnofficialCloudData.Player::exp).reversed()
+		.thenComparing(UnofficialCloudData.Player::uuid);
+
+	private final Map<UUID, Node> nodes = new Object2ObjectOpenHashMap<>();
+	private @Nullable Node root = null;
+	/**
+	 * Replaced on every change, so cached responses built from the leaderboard can tell when it moved.
+	 */
+	private volatile Object version = new Object();
+
+	public synchronized int size() {
+		return nodes.size();
+	}
+
+	public @NotNull Object version() {
+		return version;
+	}
+
+	/**
+	 * @return the player's 0-based rank, or {@code -1} if they aren't on the leaderboard
+	 */
+	public synchronized int rankOf(@NotNull UUID uuid) {
+		Node node = nodes.get(uuid);
+		return node != null ? rank(node.player) : -1;
+	}
+
+	public synchronized @Nullable UnofficialCloudData.Player get(@NotNull UUID uuid) {
+		Node node = nodes.get(uuid);
+		return node != null ? node.player : null;
+	}
+
+	/**
+	 * @return up to {@code limit} players starting at the 0-based rank {@code offset}
+	 */
+	public synchronized @NotNull List<UnofficialCloudData.Player> range(int offset, int limit) {
+		int from = Math.max(offset, 0);
+		int to = (int) Math.min((long) from + Math.max(limit, 0), nodes.size());
+		List<UnofficialCloudData.Player> players = new ObjectArrayList<>(Math.max(to - from, 0));
+		collect(root, from, to, players);
+		return players;
+	}
+
+	/**
+	 * Reads a window and the leaderboard's size together, so they agree with each other.
+	 */
+	public synchronized @NotNull Page page(int offset, int limit) {
+		int from = Math.max(offset, 0);
+		return new Page(from, nodes.size(), range(from, limit));
+	}
+
+	/**
+	 * @return the 0-based rank of the first player ordered after {@code cursor}; the cursor's player doesn't need to
+	 * still be on the leaderboard
+	 */
+	public synchronized int rankAfter(@NotNull Cursor cursor) {
+		UnofficialCloudData.Player key = new UnofficialCloudData.Player(cursor.uuid(), "", cursor.exp(), 0, false);
+		int rank = 0;
+		Node node = root;
+		while (node != null) {
+			if (ORDER.compare(key, node.player) < 0) {
+				node = node.left;
+			} else {
+				rank += size(node.left) + 1;
+				node = node.right;
+			}
+		}
+		return rank;
+	}
+
+	public synchronized @NotNull List<UnofficialCloudData.Player> toList() {
+		return range(0, nodes.size());
+	}
+
+	/**
+	 * Adds or moves a player, unless the leaderboard already holds newer data for them.
+	 *
+	 * @param updated when the player's data was received
+	 */
+	public synchronized void update(@NotNull UnofficialCloudData.Player player, @NotNull Instant updated) {
+		Node existing = nodes.get(player.uuid());
+		if (existing != null) {
+			if (existing.updated.isAfter(updated)) {
+				return;
+			}
+			if (existing.player.equals(player)) {
+				existing.updated = updated;
+				return;
+			}
+			root = delete(root, existing.player);
+		}
+
+		Node node = new Node(player, updated);
+		nodes.put(player.uuid(), node);
+		root = insert(root, node);
+		version = new Object();
+	}
+
+	public synchronized void remove(@NotNull UUID uuid) {
+		Node existing = nodes.remove(uuid);
+		if (existing != null) {
+			root = delete(root, existing.player);
+			version = new Object();
+		}
+	}
+
+	/**
+	 * Replaces the whole leaderboard.
+	 *
+	 * @param updated when the players' data was received
+	 */
+	public synchronized void replaceAll(@NotNull Collection<UnofficialCloudData.Player> players, @NotNull Instant updated) {
+		nodes.clear();
+		root = null;
+		for (UnofficialCloudData.Player player : players) {
+			Node node = new Node(player, updated);
+			Node previous = nodes.put(player.uuid(), node);
+			if (previous != null) {
+				root = delete(root, previous.player);
+			}
+			root = insert(root, node);
+		}
+		version = new Object();
+	}
+
+	private int rank(UnofficialCloudData.Player key) {
+		int rank = 0;
+		Node node = root;
+		while (node != null) {
+			int c = ORDER.compare(key, node.player);
+			if (c < 0) {
+				node = node.left;
+			} else if (c > 0) {
+				rank += size(node.left) + 1;
+				node = node.right;
+			} else {
+				return rank + size(node.left);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Appends the players ranked {@code [from, to)} within {@code node}'s subtree, in order.
+	 */
+	private static void collect(@Nullable Node node, int from, int to, List<UnofficialCloudData.Player> out) {
+		if (node == null || from >= to) {
+			return;
+		}
+		int leftSize = size(node.left);
+		if (from < leftSize) {
+			collect(node.left, from, Math.min(to, leftSize), out);
+		}
+		if (from <= leftSize && leftSize < to) {
+			out.add(node.player);
+		}
+		if (to > leftSize + 1) {
+			collect(node.right, Math.max(from - leftSize - 1, 0), to - leftSize - 1, out);
+		}
+	}
+
+	private static @Nullable Node insert(@Nullable Node node, Node inserted) {
+		if (node == null) {
+			return inserted;
+		}
+		if (inserted.priority > node.priority) {
+			Node[] halves = split(node, inserted.player);
+			inserted.left = halves[0];
+			inserted.right = halves[1];
+			return inserted.resize();
+		}
+		if (ORDER.compare(inserted.player, node.player) < 0) {
+			node.left = insert(node.left, inserted);
+		} else {
+			node.right = insert(node.right, inserted);
+		}
+		return node.resize();
+	}
+
+	private static @Nullable Node delete(@Nullable Node node, UnofficialCloudData.Player key) {
+		if (node == null) {
+			return null;
+		}
+		int c = ORDER.compare(key, node.player);
+		if (c == 0) {
+			return merge(node.left, node.right);
+		}
+		if (c < 0) {
+			node.left = delete(node.left, key);
+		} else {
+			node.right = delete(node.right, key);
+		}
+		return node.resize();
+	}
+
+	/**
+	 * @return the players before {@code key} and the rest
+	 */
+	private static @Nullable Node[] split(@Nullable Node node, UnofficialCloudData.Player key) {
+		if (node == null) {
+			return new Node[2];
+		}
+		if (ORDER.compare(node.player, key) < 0) {
+			Node[] halves = split(node.right, key);
+			node.right = halves[0];
+			halves[0] = node.resize();
+			return halves;
+		} else {
+			Node[] halves = split(node.left, key);
+			node.left = halves[1];
+			halves[1] = node.resize();
+			return halves;
+		}
+	}
+
+	private static @Nullable Node merge(@Nullable Node left, @Nullable Node right) {
+		if (left == null) {
+			return right;
+		}
+		if (right == null) {
+			return left;
+		}
+		if (left.priority > right.priority) {
+			left.right = merge(left.right, right);
+			return left.resize();
+		} else {
+			right.left = merge(left, right.left);
+			return right.resize();
+		}
+	}
+
+	private static int size(@Nullable Node node) {
+		return node != null ? node.size : 0;
+	}
+
+	/**
+	 * @param offset the 0-based rank of the first player
+	 * @param total the leaderboard's size
+	 */
+	public record Page(int offset, int total, @NotNull List<UnofficialCloudData.Player> players) {
+		/**
+		 * @return a cursor to the page after this one, or {@code null} if this is the last
+		 */
+		public @Nullable Cursor next() {
+			if (players.isEmpty() || offset + players.size() >= total) {
+				return null;
+			}
+			return Cursor.of(players.getLast());
+		}
+	}
+
+	/**
+	 * A position between two players, by the sort key of the one before it. Unlike an offset, it still points to the
+	 * same place after players above it move.
+	 */
+	public record Cursor(int exp, @NotNull UUID uuid) {
+		private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+		private static final int ENCODED_BYTES = 4 + 16;
+
+		public static @NotNull Cursor of(@NotNull UnofficialCloudData.Player player) {
+			return new Cursor(player.exp(), player.uuid());
+		}
+
+		public static @NotNull Optional<Cursor> decode(@NotNull String str) {
+			byte[] bytes;
+			try {
+				bytes = Base64.getUrlDecoder().decode(str);
+			} catch (IllegalArgumentException e) {
+				return Optional.empty();
+			}
+			if (bytes.length != ENCODED_BYTES) {
+				return Optional.empty();
+			}
+			ByteBuffer buf = ByteBuffer.wrap(bytes);
+			return Optional.of(new Cursor(buf.getInt(), new UUID(buf.getLong(), buf.getLong())));
+		}
+
+		public @NotNull String encode() {
+			ByteBuffer buf = ByteBuffer.allocate(ENCODED_BYTES);
+			buf.putInt(exp);
+			buf.putLong(uuid.getMostSignificantBits());
+			buf.putLong(uuid.getLeastSignificantBits());
+			return ENCODER.encodeToString(buf.array());
+		}
+	}
+
+	private static final class Node {
+		private final UnofficialCloudData.Player player;
+		private final int priority = ThreadLocalRandom.current().nextInt();
+		private Instant updated;
+		private @Nullable Node left = null;
+		private @Nullable Node right = null;
+		private int size = 1;
+
+		Node(UnofficialCloudData.Player player, Instant updated) {
+			this.player = player;
+			this.updated = updated;
+		}
+
+		Node resize() {
+			size = 1 + size(left) + size(right);
+			return this;
+		}
+	}
+}
@@ -3,9 +3,10 @@ package dev.vuis.bfapi.cloud.unofficial;
 import com.google.common.collect.Iterables;
 import com.google.gson.stream.JsonWriter;
 import dev.vuis.bfapi.cloud.BfCloudData;
-import dev.vuis.bfapi.cloud.BfPlayerData;
+import dev.vuis.bfapi.cloud.PlayerSummary;
 import dev.vuis.bfapi.cloud.cache.BfDataCache;
 import dev.vuis.bfapi.util.Util;
+import dev.vuis.bfapi.util.cache.ExpiryHolder;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.file.Files;
@@ -13,7 +14,6 @@ import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
@@ -44,7 +44,7 @@ public class UnofficialCloudData {
 	private Instant lastRefreshed = null;
 
 	@Getter
-	private List<Player> playerExpLeaderboard = List.of();
+	private final ExpLeaderboard playerExpLeaderboard = new ExpLeaderboard();
 	@Getter
 	private Set<UUID> clanList = Set.of();
 
@@ -68,11 +68,53 @@ public class UnofficialCloudData {
 		return true;
 	}
 
+	/**
+	 * Restores the results of an earlier refresh, unless a refresh has finished since startup.
+	 *
+	 * @return whether the results were restored
+	 */
+	public synchronized boolean restore(@NotNull List<Player> playerExpLeaderboard, @NotNull Set<UUID> clanList, @NotNull Instant lastRefreshed) {
+		if (this.lastRefreshed != null) {
+			return false;
+		}
+		this.playerExpLeaderboard.replaceAll(playerExpLeaderboard, lastRefreshed);
+		this.clanList = Set.copyOf(clanList);
+		this.lastRefreshed = lastRefreshed;
+		return true;
+	}
+
+	/**
+	 * Keeps the leaderboard current with player data decoded for any route.
+	 *
+	 * @param updated when the player's data was received
+	 */
+	public void onPlayerData(@NotNull PlayerSummary summary, @NotNull Instant updated) {
+		if (!playerList.contains(summary.uuid())) {
+			return;
+		}
+		if (!summary.hasPrestigeExp()) {
+			playerExpLeaderboard.remove(summary.uuid());
+			return;
+		}
+
+		boolean isActive;
+		ExpiryHolder<BfCloudData> cloudData = dataCache.cloudData.getIfPresent();
+		if (cloudData != null) {
+			isActive = cloudData.value().playerScoreboardIndex(summary.uuid()) != -1;
+		} else {
+			Player previous = playerExpLeaderboard.get(summary.uuid());
+			isActive = previous != null && previous.isActive();
+		}
+		playerExpLeaderboard.update(Player.of(summary, isActive), updated);
+	}
+
 	private void refresh() {
+		Instant started = Instant.now();
 		int numChunks = Math.ceilDiv(playerList.size(), REQUEST_CHUNK_SIZE);
 		log.info("requesting data for {} players ({} chunks)", playerList.size(), numChunks);
 
-		List<BfPlayerData> playerDatas = new ArrayList<>();
+		List<PlayerSummary> players = new ArrayList<>();
+		List<Player> carriedOver = new ArrayList<>();
 
 		Iterable<List<UUID>> uuidChunks = Iterables.partition(playerList, REQUEST_CHUNK_SIZE);
 		int currentChunk = 0;
@@ -81,9 +123,13 @@ public class UnofficialCloudData {
 			currentChunk++;
 			log.info("getting chunk {}/{}", currentChunk, numChunks);
 
-			var listDataFutures = dataCache.playerData.get(uuidChunk);
+			var summaryFutures = dataCache.playerData.getSummaries(uuidChunk);
 			try {
-				CompletableFuture.allOf(listDataFutures.values().toArray(new CompletableFuture[0])).get(5, TimeUnit.MINUTES);
+				// a player that times out or is unknown shouldn't fail the whole refresh
+				CompletableFuture.allOf(summaryFutures.values().stream()
+					.map(f -> f.exceptionally(_ -> null))
+					.toArray(CompletableFuture[]::new)
+				).get(5, TimeUnit.MINUTES);
 			} catch (InterruptedException | ExecutionException e) {
 				log.error("ucd player list request failed", e);
 				refreshing.set(false);
@@ -94,12 +140,30 @@ public class UnofficialCloudData {
 				return;
 			}
 
-			playerDatas.addAll(listDataFutures.values().stream()
-				.map(f -> f.join().value())
-				.filter(Util::hasPrestigeExp)
-				.toList());
+			List<PlayerSummary> chunkSummaries = new ArrayList<>(summaryFutures.size());
+			int numFailed = 0;
+			for (var entry : summaryFutures.entrySet()) {
+				if (entry.getValue().isCompletedExceptionally()) {
+					numFailed++;
+					// keep the player's last known entry rather than dropping them
+					Player previous = playerExpLeaderboard.get(entry.getKey());
+					if (previous != null) {
+						carriedOver.add(previous);
+					}
+				} else {
+					chunkSummaries.add(entry.getValue().join());
+				}
+			}
+			if (numFailed > 0) {
+				log.warn("{} players failed to load and were skipped", numFailed);
+			}
+
+			List<PlayerSummary> chunkPlayers = chunkSummaries.stream()
+				.filter(PlayerSummary::hasPrestigeExp)
+				.toList();
+			players.addAll(chunkPlayers);
 
-			int numFiltered = uuidChunk.size() - playerDatas.size();
+			int numFiltered = chunkSummaries.size() - chunkPlayers.size();
 			if (numFiltered > 0) {
 				log.warn("{} players were filtered out", numFiltered);
 			}
@@ -117,8 +181,8 @@ public class UnofficialCloudData {
 			log.info("writing filtered players");
 
 			try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Path.of("ucd_filtered_players.txt")))) {
-				for (BfPlayerData playerData : playerDatas) {
-					writer.println(playerData.getUUID());
+				for (PlayerSummary player : players) {
+					writer.println(player.uuid());
 				}
 			} catch (IOException e) {
 				log.error("failed to write filtered players", e);
@@ -139,24 +203,23 @@ public class UnofficialCloudData {
 			return;
 		}
 
-		clanList = playerDatas.stream()
-			.map(BfPlayerData::getClanId)
+		Set<UUID> newClanList = players.stream()
+			.map(PlayerSummary::clanId)
 			.filter(Objects::nonNull)
 			.collect(Collectors.toUnmodifiableSet());
 
-		playerExpLeaderboard = playerDatas.stream()
-			.sorted(Comparator.<BfPlayerData>comparingInt(d -> Util.getTotalExp(d.getPrestigeLevel(), d.getExp())).reversed())
-			.map(d -> new Player(
-				d.getUUID(),
-				d.getUsername(),
-				Util.getTotalExp(d.getPrestigeLevel(), d.getExp()),
-				d.getPrestigeLevel(),
-				Util.indexOf(cloudData.playerScores(), p -> p.left().equals(d.getUUID())) != -1
-			))
-			.toList();
+		List<Player> newPlayerExpLeaderboard = new ArrayList<>(players.size() + carriedOver.size());
+		for (PlayerSummary player : players) {
+			newPlayerExpLeaderboard.add(Player.of(player, cloudData.playerScoreboardIndex(player.uuid()) != -1));
+		}
+		newPlayerExpLeaderboard.addAll(carriedOver);
 
+		synchronized (this) {
+			clanList = newClanList;
+			playerExpLeaderboard.replaceAll(newPlayerExpLeaderboard, started);
+			lastRefreshed = Instant.now();
+		}
 		refreshing.set(false);
-		lastRefreshed = Instant.now();
 		log.info("refresh finished");
 	}
 
@@ -175,6 +238,24 @@ public class UnofficialCloudData {
 		return w;
 	}
 
+	public @NotNull JsonWriter serializePlayerLeaderboardPage(@NotNull JsonWriter w, @NotNull ExpLeaderboard.Page page) throws IOException {
+		w.beginObject();
+
+		serializeLastUpdated(w);
+		w.name("total").value(page.total());
+		w.name("offset").value(page.offset());
+		w.name("next_cursor").value(Util.ifNonNull(page.next(), ExpLeaderboard.Cursor::encode));
+		w.name("leaderboard").beginArray();
+		for (Player player : page.players()) {
+			player.serialize(w);
+		}
+		w.endArray();
+
+		w.endObject();
+
+		return w;
+	}
+
 	public @NotNull JsonWriter serializeClanList(@NotNull JsonWriter w) throws IOException {
 		w.beginObject();
 
@@ -202,6 +283,10 @@ public class UnofficialCloudData {
 		int prestige,
 		boolean isActive
 	) {
+		public static @NotNull Player of(@NotNull PlayerSummary summary, boolean isActive) {
+			return new Player(summary.uuid(), summary.username(), summary.totalExp(), summary.prestige(), isActive);
+		}
+
 		public @NotNull JsonWriter serialize(@NotNull JsonWriter w) throws IOException {
 			w.beginArray();
 
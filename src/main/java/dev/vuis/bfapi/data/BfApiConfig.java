@@ -1,8 +1,10 @@
 package dev.vuis.bfapi.data;
 
+import dev.vuis.bfapi.util.NettyTransport;
 import dev.vuis.bfapi.util.Util;
 import java.net.InetSocketAddress;
 import java.nio.file.Path;
+import java.time.Duration;
 import lombok.Getter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -19,6 +21,22 @@ public final class BfApiConfig {
 	@Getter
 	private final int apiPort;
 	@Getter
+	private final @NotNull NettyTransport nettyTransport;
+	@Getter
+	private final int apiAcceptorThreads;
+	@Getter
+	private final int ioThreads;
+	@Getter
+	private final boolean apiHttp2;
+	@Getter
+	private final boolean apiVirtualThreads;
+	@Getter
+	private final int apiMaxInFlightRequests;
+	@Getter
+	private final long apiResponseCacheMaxBytes;
+	@Getter
+	private final int apiCompressionMinBytes;
+	@Getter
 	private final @NotNull String httpUserAgent;
 	@Getter
 	private final @NotNull Path tokensJsonPath;
@@ -35,6 +53,44 @@ public final class BfApiConfig {
 	@Getter
 	private final @Nullable String bfUcdRefreshSecret;
 	@Getter
+	private final @NotNull Duration bfStaleGrace;
+	@Getter
+	private final long bfCacheMaxBytesClanData;
+	@Getter
+	private final long bfCacheMaxBytesItemDefault;
+	@Getter
+	private final long bfCacheMaxBytesPlayerData;
+	@Getter
+	private final int bfPlayerDataDecodedCacheSize;
+	@Getter
+	private final long bfCacheMaxBytesPlayerInventory;
+	@Getter
+	private final long bfCacheMaxBytesPlayerStatus;
+	@Getter
+	private final int bfMaxAssemblingInventories;
+	@Getter
+	private final double bfRefreshAheadFraction;
+	@Getter
+	private final double bfRefreshAheadPerSecond;
+	@Getter
+	private final @NotNull Duration bfNegativeCacheTtl;
+	@Getter
+	private final int bfUnknownFilterSize;
+	@Getter
+	private final @NotNull Duration bfUnknownFilterRotation;
+	@Getter
+	private final @NotNull Duration bfRequestTimeout;
+	@Getter
+	private final int bfRequestRetries;
+	@Getter
+	private final int bfRequestBatchWindowMillis;
+	@Getter
+	private final int bfRequestBatchMaxEntries;
+	@Getter
+	private final @Nullable Path bfSnapshotPath;
+	@Getter
+	private final @NotNull Duration bfSnapshotInterval;
+	@Getter
 	private final boolean bfUcdWriteFilteredPlayers;
 	@Getter
 	private final boolean bfScrapeFriends;
@@ -43,6 +99,15 @@ public final class BfApiConfig {
 
 	private BfApiConfig() {
 		apiPort = getOrDefault("API_PORT", 19190);
+		nettyTransport = getOrDefault("NETTY_TRANSPORT", NettyTransport::select, () -> NettyTransport.select("auto"));
+		apiAcceptorThreads = getOrDefault("API_ACCEPTOR_THREADS", 1);
+		// API_IO_THREADS is the name from before the group was shared with the cloud connection
+		ioThreads = getOrDefault("IO_THREADS", Integer::parseInt, () -> getOrDefault("API_IO_THREADS", 0));
+		apiHttp2 = getOrDefault("API_HTTP2", true);
+		apiVirtualThreads = getOrDefault("API_VIRTUAL_THREADS", false);
+		apiMaxInFlightRequests = getOrDefault("API_MAX_IN_FLIGHT_REQUESTS", 1024);
+		apiResponseCacheMaxBytes = getOrDefault("API_RESPONSE_CACHE_MAX_BYTES", Long::parseLong, 64L * 1024 * 1024);
+		apiCompressionMinBytes = getOrDefault("API_COMPRESSION_MIN_BYTES", 1024);
 		httpUserAgent = getOrDefault("HTTP_USER_AGENT", "bfapi/1.0-SNAPSHOT");
 		tokensJsonPath = getOrDefault("TOKENS_JSON_PATH", Path::of, () -> Path.of("bfapi_auth_tokens.json"));
 		bfCloudAddress = getOrDefault(
@@ -55,6 +120,25 @@ public final class BfApiConfig {
 		bfHardwareId = getOrThrow("BF_HARDWARE_ID", Util::parseHexArray);
 		bfPlayerListPath = getOrNull("BF_PLAYER_LIST_PATH", Path::of);
 		bfUcdRefreshSecret = getOrNull("BF_UCD_REFRESH_SECRET");
+		bfStaleGrace = getOrDefault("BF_STALE_GRACE_SECONDS", s -> Duration.ofSeconds(Long.parseLong(s)), Duration.ofMinutes(15));
+		bfCacheMaxBytesClanData = getOrDefault("BF_CACHE_MAX_BYTES_CLAN_DATA", Long::parseLong, 16L * 1024 * 1024);
+		bfCacheMaxBytesItemDefault = getOrDefault("BF_CACHE_MAX_BYTES_ITEM_DEFAULT", Long::parseLong, 16L * 1024 * 1024);
+		bfCacheMaxBytesPlayerData = getOrDefault("BF_CACHE_MAX_BYTES_PLAYER_DATA", Long::parseLong, 128L * 1024 * 1024);
+		bfPlayerDataDecodedCacheSize = getOrDefault("BF_PLAYER_DATA_DECODED_CACHE_SIZE", 1024);
+		bfCacheMaxBytesPlayerInventory = getOrDefault("BF_CACHE_MAX_BYTES_PLAYER_INVENTORY", Long::parseLong, 128L * 1024 * 1024);
+		bfCacheMaxBytesPlayerStatus = getOrDefault("BF_CACHE_MAX_BYTES_PLAYER_STATUS", Long::parseLong, 16L * 1024 * 1024);
+		bfMaxAssemblingInventories = getOrDefault("BF_MAX_ASSEMBLING_INVENTORIES", 1024);
+		bfRefreshAheadFraction = getOrDefault("BF_REFRESH_AHEAD_FRACTION", Double::parseDouble, 0.75);
+		bfRefreshAheadPerSecond = getOrDefault("BF_REFRESH_AHEAD_PER_SECOND", Double::parseDouble, 20.0);
+		bfNegativeCacheTtl = getOrDefault("BF_NEGATIVE_CACHE_SECONDS", s -> Duration.ofSeconds(Long.parseLong(s)), Duration.ofSeconds(30));
+		bfUnknownFilterSize = getOrDefault("BF_UNKNOWN_FILTER_SIZE", 100_000);
+		bfUnknownFilterRotation = getOrDefault("BF_UNKNOWN_FILTER_ROTATION_MINUTES", s -> Duration.ofMinutes(Long.parseLong(s)), Duration.ofMinutes(30));
+		bfRequestTimeout = getOrDefault("BF_REQUEST_TIMEOUT_MS", s -> Duration.ofMillis(Long.parseLong(s)), Duration.ofSeconds(4));
+		bfRequestRetries = getOrDefault("BF_REQUEST_RETRIES", 1);
+		bfRequestBatchWindowMillis = getOrDefault("BF_REQUEST_BATCH_WINDOW_MS", 5);
+		bfRequestBatchMaxEntries = getOrDefault("BF_REQUEST_BATCH_MAX_ENTRIES", 256);
+		bfSnapshotPath = getOrNull("BF_SNAPSHOT_PATH", Path::of);
+		bfSnapshotInterval = getOrDefault("BF_SNAPSHOT_INTERVAL_SECONDS", s -> Duration.ofSeconds(Long.parseLong(s)), Duration.ofMinutes(5));
 		bfUcdWriteFilteredPlayers = getOrDefault("BF_UCD_WRITE_FILTERED_PLAYERS", false);
 		bfScrapeFriends = getOrDefault("BF_SCRAPE_FRIENDS", false);
 		bfScrapeFriendsDepth = getOrDefault("BF_SCRAPE_FRIENDS_DEPTH", 2);
@@ -0,0 +1,331 @@
+package dev.vuis.bfapi.data;
+
+import com.google.gson.stream.JsonWriter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.util.concurrent.FastThreadLocal;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A {@link JsonWriter} that encodes compact UTF-8 straight into a {@link ByteBuf}, without going through a
+ * {@link Writer} and a charset encoder. Output matches a default {@code JsonWriter}: nulls are written, HTML characters
+ * are not escaped, and non-finite numbers are rejected.
+ * <p>
+ * Encoded names are cached process-wide, so the fixed field names of serializers are encoded once.
+ * Writers are reused per thread through {@link #acquire(ByteBuf)}.
+ */
+public final class ByteBufJsonWriter extends JsonWriter {
+	private static final int MAX_CACHED_NAMES = 4096;
+	private static final Map<String, byte[]> NAME_CACHE = new ConcurrentHashMap<>();
+	private static final FastThreadLocal<ByteBufJsonWriter> THREAD_WRITER = new FastThreadLocal<>() {
+		@Override
+		protected ByteBufJsonWriter initialValue() {
+			return new ByteBufJsonWriter();
+		}
+	};
+
+	private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+	private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+	private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+
+	private static final int EMPTY_ARRAY = 1;
+	private static final int NONEMPTY_ARRAY = 2;
+	private static final int EMPTY_OBJECT = 3;
+	private static final int DANGLING_NAME = 4;
+	private static final int NONEMPTY_OBJECT = 5;
+	private static final int EMPTY_DOCUMENT = 6;
+	private static final int NONEMPTY_DOCUMENT = 7;
+
+	private @Nullable ByteBuf buf = null;
+	private int[] stack = new int[32];
+	private int stackSize = 0;
+	private final byte[] digits = new byte[20];
+	private boolean inUse = false;
+
+	private ByteBufJsonWriter() {
+		super(Writer.nullWriter());
+	}
+
+	/**
+	 * @return this thread's writer targeting {@code buf}, or a new one if it is already in use; must be handed back
+	 * with {@link #release()}
+	 */
+	public static ByteBufJsonWriter acquire(@NotNull ByteBuf buf) {
+		ByteBufJsonWriter writer = THREAD_WRITER.get();
+		if (writer.inUse) {
+			writer = new ByteBufJsonWriter();
+		}
+		writer.inUse = true;
+		writer.buf = buf;
+		writer.stackSize = 0;
+		writer.push(EMPTY_DOCUMENT);
+		return writer;
+	}
+
+	public void release() {
+		buf = null;
+		inUse = false;
+	}
+
+	@Override
+	public JsonWriter beginArray() {
+		return open(EMPTY_ARRAY, '[');
+	}
+
+	@Override
+	public JsonWriter endArray() {
+		return close(EMPTY_ARRAY, NONEMPTY_ARRAY, ']');
+	}
+
+	@Override
+	public JsonWriter beginObject() {
+		return open(EMPTY_OBJECT, '{');
+	}
+
+	@Override
+	public JsonWriter endObject() {
+		return close(EMPTY_OBJECT, NONEMPTY_OBJECT, '}');
+	}
+
+	@Override
+	public JsonWriter name(@NotNull String name) {
+		int top = peek();
+		if (top == NONEMPTY_OBJECT) {
+			buf().writeByte(',');
+		} else if (top != EMPTY_OBJECT) {
+			throw new IllegalStateException("Please begin an object before writing a name.");
+		}
+		stack[stackSize - 1] = DANGLING_NAME;
+
+		byte[] encoded = NAME_CACHE.get(name);
+		if (encoded != null) {
+			buf().writeBytes(encoded);
+		} else {
+			int start = buf().writerIndex();
+			writeString(name);
+			if (NAME_CACHE.size() < MAX_CACHED_NAMES) {
+				NAME_CACHE.putIfAbsent(name, ByteBufUtil.getBytes(buf(), start, buf().writerIndex() - start));
+			}
+		}
+		buf().writeByte(':');
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(@Nullable String value) {
+		if (value == null) {
+			return nullValue();
+		}
+		beforeValue();
+		writeString(value);
+		return this;
+	}
+
+	@Override
+	public JsonWriter jsonValue(@Nullable String value) {
+		if (value == null) {
+			return nullValue();
+		}
+		beforeValue();
+		buf().writeCharSequence(value, StandardCharsets.UTF_8);
+		return this;
+	}
+
+	@Override
+	public JsonWriter nullValue() {
+		beforeValue();
+		buf().writeBytes(NULL);
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(boolean value) {
+		beforeValue();
+		buf().writeBytes(value ? TRUE : FALSE);
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(@Nullable Boolean value) {
+		return value == null ? nullValue() : value(value.booleanValue());
+	}
+
+	@Override
+	public JsonWriter value(float value) {
+		if (!Float.isFinite(value)) {
+			throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+		}
+		beforeValue();
+		ByteBufUtil.writeAscii(buf(), Float.toString(value));
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(double value) {
+		if (!Double.isFinite(value)) {
+			throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+		}
+		beforeValue();
+		ByteBufUtil.writeAscii(buf(), Double.toString(value));
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(long value) {
+		beforeValue();
+		if (value == Long.MIN_VALUE) {
+			ByteBufUtil.writeAscii(buf(), Long.toString(value));
+			return this;
+		}
+		if (value < 0) {
+			buf().writeByte('-');
+			value = -value;
+		}
+		int pos = digits.length;
+		do {
+			digits[--pos] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value != 0);
+		buf().writeBytes(digits, pos, digits.length - pos);
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(@Nullable Number value) {
+		if (value == null) {
+			return nullValue();
+		}
+		if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+			return value(value.longValue());
+		}
+		String string = value.toString();
+		if (string.equals("NaN") || string.equals("Infinity") || string.equals("-Infinity")) {
+			throw new IllegalArgumentException("Numeric values must be finite, but was " + string);
+		}
+		beforeValue();
+		ByteBufUtil.writeAscii(buf(), string);
+		return this;
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public void close() {
+	}
+
+	private ByteBuf buf() {
+		if (buf == null) {
+			throw new IllegalStateException("writer is not acquired");
+		}
+		return buf;
+	}
+
+	private int peek() {
+		if (stackSize == 0) {
+			throw new IllegalStateException("JsonWriter is closed.");
+		}
+		return stack[stackSize - 1];
+	}
+
+	private void push(int scope) {
+		if (stackSize == stack.length) {
+			stack = Arrays.copyOf(stack, stackSize * 2);
+		}
+		stack[stackSize++] = scope;
+	}
+
+	private JsonWriter open(int empty, char bracket) {
+		beforeValue();
+		push(empty);
+		buf().writeByte(bracket);
+		return this;
+	}
+
+	private JsonWriter close(int empty, int nonempty, char bracket) {
+		int top = peek();
+		if (top != empty && top != nonempty) {
+			throw new IllegalStateException(top == DANGLING_NAME ? "Dangling name" : "Nesting problem.");
+		}
+		stackSize--;
+		buf().writeByte(bracket);
+		return this;
+	}
+
+	private void beforeValue() {
+		switch (peek()) {
+			case EMPTY_DOCUMENT -> stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+			case EMPTY_ARRAY -> stack[stackSize - 1] = NONEMPTY_ARRAY;
+			case NONEMPTY_ARRAY -> buf().writeByte(',');
+			case DANGLING_NAME -> stack[stackSize - 1] = NONEMPTY_OBJECT;
+			case NONEMPTY_DOCUMENT -> throw new IllegalStateException("JSON must have only one top-level value.");
+			default -> throw new IllegalStateException("Nesting problem.");
+		}
+	}
+
+	/**
+	 * Writes a quoted string, escaped like {@link JsonWriter} does with HTML escaping off.
+	 */
+	private void writeString(String s) {
+		ByteBuf buf = buf();
+		int length = s.length();
+		buf.ensureWritable(length + 2);
+		buf.writeByte('"');
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				switch (c) {
+					case '"' -> buf.writeByte('\\').writeByte('"');
+					case '\\' -> buf.writeByte('\\').writeByte('\\');
+					case '\t' -> buf.writeByte('\\').writeByte('t');
+					case '\b' -> buf.writeByte('\\').writeByte('b');
+					case '\n' -> buf.writeByte('\\').writeByte('n');
+					case '\r' -> buf.writeByte('\\').writeByte('r');
+					case '\f' -> buf.writeByte('\\').writeByte('f');
+					default -> {
+						if (c < 0x20) {
+							writeUnicodeEscape(buf, c);
+						} else {
+							buf.writeByte(c);
+						}
+					}
+				}
+			} else if (c < 0x800) {
+				buf.writeByte(0xc0 | c >> 6);
+				buf.writeByte(0x80 | c & 0x3f);
+			} else if (Character.isSurrogate(c)) {
+				if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+					int codePoint = Character.toCodePoint(c, s.charAt(++i));
+					buf.writeByte(0xf0 | codePoint >> 18);
+					buf.writeByte(0x80 | codePoint >> 12 & 0x3f);
+					buf.writeByte(0x80 | codePoint >> 6 & 0x3f);
+					buf.writeByte(0x80 | codePoint & 0x3f);
+				} else {
+					// unpaired surrogates can't be encoded; the JDK's encoder substitutes the same way
+					buf.writeByte('?');
+				}
+			} else if (c == 0x2028 || c == 0x2029) {
+				writeUnicodeEscape(buf, c);
+			} else {
+				buf.writeByte(0xe0 | c >> 12);
+				buf.writeByte(0x80 | c >> 6 & 0x3f);
+				buf.writeByte(0x80 | c & 0x3f);
+			}
+		}
+		buf.writeByte('"');
+	}
+
+	private static void writeUnicodeEscape(ByteBuf buf, char c) {
+		buf.writeByte('\\').writeByte('u');
+		for (int shift = 12; shift >= 0; shift -= 4) {
+			buf.writeByte(Character.forDigit(c >> shift & 0xf, 16));
+		}
+	}
+}
@@ -11,19 +11,27 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.regex.Pattern;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 @Slf4j
 public record MinecraftProfileData(
 	UUID uuid,
 	String username
 ) {
-	public static final Cache<String, Optional<MinecraftProfileData>> CACHE_BY_NAME = CacheBuilder.newBuilder()
-		.expireAfterWrite(Duration.ofMinutes(30))
+	public static final Duration CACHE_LIFETIME = Duration.ofMinutes(30);
+	/**
+	 * Entries expire {@link #CACHE_LIFETIME} after their lookup; restored ones can enter the cache late, so reads
+	 * check the lookup time too.
+	 */
+	public static final Cache<String, Lookup> CACHE_BY_NAME = CacheBuilder.newBuilder()
+		.expireAfterWrite(CACHE_LIFETIME)
 		.maximumSize(500)
 		.build();
 
@@ -37,26 +45,73 @@ public record MinecraftProfileData(
 			return Optional.empty();
 		}
 
-		Optional<MinecraftProfileData> cached = CACHE_BY_NAME.getIfPresent(lookupName);
+		Optional<MinecraftProfileData> cached = getCached(lookupName);
 		if (cached != null) {
 			return cached;
 		}
 
 		log.info("refreshing minecraft profile for {}", lookupName);
 
-		HttpRequest request = HttpRequest.newBuilder()
+		HttpResponse<String> response = HTTP_CLIENT.send(lookupRequest(lookupName), HttpResponse.BodyHandlers.ofString());
+		return handleLookupResponse(name, lookupName, response);
+	}
+
+	public static CompletableFuture<Optional<MinecraftProfileData>> retrieveByNameAsync(@NotNull String name) {
+		String lookupName = name.toLowerCase();
+
+		if (!USERNAME_PATTERN.matcher(lookupName).matches()) {
+			return CompletableFuture.completedFuture(Optional.empty());
+		}
+
+		Optional<MinecraftProfileData> cached = getCached(lookupName);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached);
+		}
+
+		log.info("refreshing minecraft profile for {}", lookupName);
+
+		return HTTP_CLIENT.sendAsync(lookupRequest(lookupName), HttpResponse.BodyHandlers.ofString())
+			.thenApply(response -> handleLookupResponse(name, lookupName, response));
+	}
+
+	/**
+	 * Caches a profile restored from a snapshot, unless the name has been looked up since.
+	 *
+	 * @param lookedUp when the profile was originally looked up
+	 * @return whether the profile was restored
+	 */
+	public static boolean restore(@NotNull String lookupName, @NotNull MinecraftProfileData profile, @NotNull Instant lookedUp) {
+		Lookup lookup = new Lookup(Optional.of(profile), lookedUp);
+		return !lookup.isExpired() && CACHE_BY_NAME.asMap().putIfAbsent(lookupName, lookup) == null;
+	}
+
+	private static @Nullable Optional<MinecraftProfileData> getCached(@NotNull String lookupName) {
+		Lookup cached = CACHE_BY_NAME.getIfPresent(lookupName);
+		if (cached == null) {
+			return null;
+		}
+		if (cached.isExpired()) {
+			CACHE_BY_NAME.asMap().remove(lookupName, cached);
+			return null;
+		}
+		return cached.profile();
+	}
+
+	private static HttpRequest lookupRequest(@NotNull String lookupName) {
+		return HttpRequest.newBuilder()
 			.uri(URI.create("https://api.minecraftservices.com/minecraft/profile/lookup/name/" + lookupName))
 			.header("User-Agent", BfApiConfig.instance().getHttpUserAgent())
 			.GET()
 			.build();
+	}
 
-		HttpResponse<String> response = HTTP_CLIENT.send(request, HttpResponse.BodyHandlers.ofString());
+	private static Optional<MinecraftProfileData> handleLookupResponse(@NotNull String name, @NotNull String lookupName, HttpResponse<String> response) {
 		if (!Util.isSuccess(response.statusCode())) {
 			if (response.statusCode() != HttpResponseStatus.NOT_FOUND.code()) {
 				log.error("minecraft profile lookup failed for {} ({}):\n{}", name, response.statusCode(), response.body());
 			}
 
-			CACHE_BY_NAME.put(lookupName, Optional.empty());
+			CACHE_BY_NAME.put(lookupName, new Lookup(Optional.empty(), Instant.now()));
 			return Optional.empty();
 		}
 
@@ -67,8 +122,17 @@ public record MinecraftProfileData(
 			json.get("name").getAsString()
 		));
 
-		CACHE_BY_NAME.put(lookupName, profile);
+		CACHE_BY_NAME.put(lookupName, new Lookup(profile, Instant.now()));
 
 		return profile;
 	}
+
+	/**
+	 * @param profile the profile, or empty if the name doesn't exist
+	 */
+	public record Lookup(@NotNull Optional<MinecraftProfileData> profile, @NotNull Instant lookedUp) {
+		public boolean isExpired() {
+			return !Instant.now().isBefore(lookedUp.plus(CACHE_LIFETIME));
+		}
+	}
 }
@@ -12,6 +12,7 @@ import com.boehmod.bflib.cloud.common.player.status.PlayerStatus;
 import com.google.gson.stream.JsonWriter;
 import dev.vuis.bfapi.cloud.BfPlayerInventory;
 import dev.vuis.bfapi.cloud.cache.BfDataCache;
+import dev.vuis.bfapi.http.ResponseCache;
 import dev.vuis.bfapi.util.Util;
 import java.io.IOException;
 import java.util.Optional;
@@ -158,13 +159,23 @@ public final class Serialization {
 	}
 
 	public static @NotNull JsonWriter playerStub(@NotNull JsonWriter w, @Nullable BfDataCache dataCache, @NotNull UUID uuid) throws IOException {
-		namedStub(w, uuid, Util.getCachedPlayerName(dataCache, uuid));
-		return w;
+		return cachedNameStub(w, uuid, Util.findCachedPlayerName(dataCache, uuid));
 	}
 
 	public static @NotNull JsonWriter clanStub(@NotNull JsonWriter w, @Nullable BfDataCache dataCache, @NotNull UUID uuid) throws IOException {
-		namedStub(w, uuid, Util.getCachedClanName(dataCache, uuid));
-		return w;
+		return cachedNameStub(w, uuid, Util.findCachedClanName(dataCache, uuid));
+	}
+
+	/**
+	 * Writes a stub with a name looked up in the cache. A missing name is written as unknown, and keeps the body being
+	 * built from being reused, so the name is filled in once it is cached.
+	 */
+	private static @NotNull JsonWriter cachedNameStub(@NotNull JsonWriter w, @NotNull UUID uuid, @Nullable String name) throws IOException {
+		if (name == null) {
+			ResponseCache.markProvisional();
+			name = Util.UNKNOWN_NAME;
+		}
+		return namedStub(w, uuid, name);
 	}
 
 	public static @NotNull JsonWriter namedStub(@NotNull JsonWriter w, @NotNull UUID uuid, @NotNull String name) throws IOException {
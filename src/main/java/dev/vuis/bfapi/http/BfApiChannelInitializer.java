@@ -1,21 +1,108 @@
 package dev.vuis.bfapi.http;
 
+import dev.vuis.bfapi.data.BfApiConfig;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.compression.Brotli;
+import io.netty.handler.codec.compression.CompressionOptions;
+import io.netty.handler.codec.compression.StandardCompressionOptions;
+import io.netty.handler.codec.compression.Zstd;
+import io.netty.handler.codec.http.HttpContentCompressor;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http2.CleartextHttp2ServerUpgradeHandler;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2ServerUpgradeCodec;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.util.AsciiString;
+import java.util.ArrayList;
+import java.util.List;
 import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.Nullable;
 
+/**
+ * Serves HTTP/1.1 and, unless disabled, cleartext HTTP/2 (h2c) on the same port.
+ * HTTP/2 is reached either through an {@code Upgrade: h2c} request or with prior knowledge.
+ * Each HTTP/2 stream gets its own child channel that sees ordinary {@code FullHttpRequest}s,
+ * so the routes work unchanged.
+ */
 @RequiredArgsConstructor
 public final class BfApiChannelInitializer extends ChannelInitializer<SocketChannel> {
+	private static final int MAX_CONTENT_LENGTH = 65535;
+	private static final CompressionOptions[] COMPRESSION_OPTIONS = compressionOptions();
+
 	private final BfApiInboundHandler inboundHandler;
+	/**
+	 * Dispatches requests to worker threads when set, otherwise requests are handled on the event loop.
+	 */
+	private final @Nullable VirtualThreadDispatcher dispatcher;
 
 	@Override
 	protected void initChannel(SocketChannel ch) {
-		ch.pipeline()
-			.addLast("codec", new HttpServerCodec())
-			.addLast("aggregator", new HttpObjectAggregator(65535))
+		if (!BfApiConfig.instance().isApiHttp2()) {
+			ch.pipeline().addLast("codec", new HttpServerCodec());
+			addHttpHandlers(ch.pipeline());
+			return;
+		}
+
+		HttpServerCodec codec = new HttpServerCodec();
+		HttpServerUpgradeHandler upgradeHandler = new HttpServerUpgradeHandler(
+			codec,
+			protocol -> AsciiString.contentEquals(Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME, protocol)
+				? new Http2ServerUpgradeCodec(Http2FrameCodecBuilder.forServer().build(), new Http2MultiplexHandler(new StreamInitializer()))
+				: null,
+			MAX_CONTENT_LENGTH
+		);
+
+		ch.pipeline().addLast("h2c", new CleartextHttp2ServerUpgradeHandler(
+			codec, upgradeHandler,
+			new ChannelInitializer<SocketChannel>() {
+				@Override
+				protected void initChannel(SocketChannel channel) {
+					channel.pipeline().addLast(
+						Http2FrameCodecBuilder.forServer().build(),
+						new Http2MultiplexHandler(new StreamInitializer())
+					);
+				}
+			}
+		));
+		// only reached by HTTP/1.1 requests; once upgraded, the multiplexer consumes everything before this point
+		addHttpHandlers(ch.pipeline());
+	}
+
+	private void addHttpHandlers(ChannelPipeline pipeline) {
+		pipeline
+			.addLast("compressor", new HttpContentCompressor(BfApiConfig.instance().getApiCompressionMinBytes(), COMPRESSION_OPTIONS))
+			.addLast("aggregator", new HttpObjectAggregator(MAX_CONTENT_LENGTH))
 			.addLast("fixer", new HttpFixerOutboundHandler())
-			.addLast("handler", inboundHandler);
+			.addLast("handler", dispatcher != null ? dispatcher : inboundHandler);
+	}
+
+	private static CompressionOptions[] compressionOptions() {
+		List<CompressionOptions> options = new ArrayList<>();
+		// brotli and zstd need their native libraries on the classpath
+		if (Brotli.isAvailable()) {
+			options.add(StandardCompressionOptions.brotli());
+		}
+		if (Zstd.isAvailable()) {
+			options.add(StandardCompressionOptions.zstd());
+		}
+		options.add(StandardCompressionOptions.gzip());
+		options.add(StandardCompressionOptions.deflate());
+		return options.toArray(new CompressionOptions[0]);
+	}
+
+	private final class StreamInitializer extends ChannelInitializer<Http2StreamChannel> {
+		@Override
+		protected void initChannel(Http2StreamChannel ch) {
+			// connection-specific headers like Connection: keep-alive are dropped when converting back to HTTP/2
+			ch.pipeline().addLast("codec", new Http2StreamFrameToHttpObjectCodec(true));
+			addHttpHandlers(ch.pipeline());
+		}
 	}
 }
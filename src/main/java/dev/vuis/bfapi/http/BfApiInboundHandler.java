@@ -6,7 +6,11 @@ import dev.vuis.bfapi.cloud.BfCloudData;
 import dev.vuis.bfapi.cloud.BfConnection;
 import dev.vuis.bfapi.cloud.BfPlayerData;
 import dev.vuis.bfapi.cloud.BfPlayerInventory;
+import dev.vuis.bfapi.cloud.CloudDisconnectedException;
+import dev.vuis.bfapi.cloud.UnknownUuidException;
+import dev.vuis.bfapi.cloud.unofficial.ExpLeaderboard;
 import dev.vuis.bfapi.cloud.unofficial.UnofficialCloudData;
+import dev.vuis.bfapi.data.BfApiConfig;
 import dev.vuis.bfapi.data.MinecraftProfileData;
 import dev.vuis.bfapi.data.Serialization;
 import dev.vuis.bfapi.util.Responses;
@@ -26,21 +30,25 @@ import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.util.concurrent.ScheduledFuture;
 import it.unimi.dsi.fastutil.Pair;
-import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.Nullable;
@@ -50,22 +58,58 @@ import org.jetbrains.annotations.Nullable;
 @ChannelHandler.Sharable
 public final class BfApiInboundHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
 	private static final int MAX_BULK_SIZE = 128;
+	private static final long TIMEOUT_SECONDS = 10;
+	private static final long BULK_TIMEOUT_SECONDS = 20;
+	private static final int DEFAULT_LEADERBOARD_PAGE_SIZE = 50;
+	private static final int MAX_LEADERBOARD_PAGE_SIZE = 1000;
+
+	/**
+	 * Sections of the composite player route, in bit order.
+	 */
+	private static final List<String> PLAYER_SECTIONS = List.of("data", "status", "inventory", "equipped");
+	private static final int PLAYER_SECTION_DATA = 1;
+	private static final int PLAYER_SECTION_STATUS = 1 << 1;
+	private static final int PLAYER_SECTION_INVENTORY = 1 << 2;
+	private static final int PLAYER_SECTION_EQUIPPED = 1 << 3;
 
 	public final AtomicReference<BfConnection> connectionReference = new AtomicReference<>();
 	public final AtomicReference<UnofficialCloudData> ucdReference = new AtomicReference<>();
 
-	private final String ucdRefreshSecret;
+	private final ResponseCache responseCache = new ResponseCache(
+		BfApiConfig.instance().getApiResponseCacheMaxBytes(),
+		BfApiConfig.instance().getApiCompressionMinBytes()
+	);
+
+	private final @Nullable String ucdRefreshSecret;
+	/**
+	 * Executor that builds responses, or {@code null} to build them on the channel's event loop.
+	 */
+	private final @Nullable Executor workExecutor;
 
 	@Override
 	protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest msg) {
+		handle(ctx, msg, ResponseSequencer.next(ctx));
+	}
+
+	/**
+	 * Routes {@code msg} and writes the response once it is ready.
+	 * The request content is only read before this method returns.
+	 *
+	 * @param sequence the request's number from {@link ResponseSequencer#next(ChannelHandlerContext)}
+	 * @return a future that completes once the response has been handed to the channel
+	 */
+	CompletableFuture<?> handle(ChannelHandlerContext ctx, FullHttpRequest msg, int sequence) {
 		QueryStringDecoder qs = new QueryStringDecoder(msg.uri());
 		String path = qs.path();
+		HttpMethod method = msg.method();
+		String uri = msg.uri();
 		boolean keepAlive = HttpUtil.isKeepAlive(msg);
 
-		FullHttpResponse response = switch (path) {
+		CompletableFuture<FullHttpResponse> response = switch (path) {
 			case "/api/v1/clan_data" -> clanData(ctx, msg, qs);
 			case "/api/v1/clan_data/bulk" -> clanDataBulk(ctx, msg, qs);
 			case "/api/v1/cloud_data" -> cloudData(ctx, msg, qs);
+			case "/api/v1/player" -> player(ctx, msg, qs);
 			case "/api/v1/player_data" -> playerData(ctx, msg, qs);
 			case "/api/v1/player_data/bulk" -> playerDataBulk(ctx, msg, qs);
 			case "/api/v1/player_inventory" -> playerInventory(ctx, msg, qs);
@@ -75,283 +119,372 @@ public final class BfApiInboundHandler extends SimpleChannelInboundHandler<FullH
 			case "/api/v1/ucd/clan_list" -> ucdClanList(ctx, msg, qs);
 			case "/api/v1/ucd/player_exp_leaderboard" -> ucdPlayerExpLeaderboard(ctx, msg, qs);
 			case "/private/bf_ucd_refresh" -> bfUcdRefresh(ctx, msg, qs);
+			case "/private/stats" -> stats(ctx, msg, qs);
 			default -> null;
 		};
 
 		if (response == null) {
-			response = Responses.error(
+			response = CompletableFuture.completedFuture(Responses.error(
 				ctx, msg,
 				HttpResponseStatus.NOT_FOUND,
 				"not_found"
-			);
+			));
 		}
 
-		log.info("{} {} - {}", msg.method(), msg.uri(), response.status().code());
+		return response.whenCompleteAsync((r, e) -> {
+			if (e != null) {
+				log.error("unhandled error while processing {} {}", method, uri, e);
+				r = Responses.error(
+					ctx, msg, HttpResponseStatus.INTERNAL_SERVER_ERROR,
+					"internal_server_error"
+				);
+			}
 
-		if (keepAlive) {
-			response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
-			ctx.writeAndFlush(response);
-		} else {
-			ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
-		}
+			writeResponse(ctx, sequence, method, uri, keepAlive, r);
+		}, Util.directIfInEventLoop(ctx.executor()));
 	}
 
-	private FullHttpResponse clanData(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs) {
+	static void writeResponse(ChannelHandlerContext ctx, int sequence, HttpMethod method, String uri, boolean keepAlive, FullHttpResponse response) {
+		ResponseSequencer.write(ctx, sequence, () -> {
+			log.info("{} {} - {}", method, uri, response.status().code());
+
+			if (keepAlive) {
+				response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+				ctx.writeAndFlush(response);
+			} else {
+				ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+			}
+		});
+	}
+
+	private CompletableFuture<FullHttpResponse> clanData(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs) {
 		BfConnection connection = connectionReference.get();
 
 		FullHttpResponse methodResponse = Responses.checkMethod(ctx, msg, HttpMethod.GET);
 		if (methodResponse != null) {
-			return methodResponse;
+			return CompletableFuture.completedFuture(methodResponse);
 		}
-		if (connection == null || !connection.isConnectedAndVerified()) {
-			return Responses.error(
+		if (connection == null) {
+			return CompletableFuture.completedFuture(Responses.error(
 				ctx, msg, HttpResponseStatus.SERVICE_UNAVAILABLE,
 				"cloud_disconnected"
-			);
+			));
 		}
 
 		if (!qs.parameters().containsKey("uuid")) {
-			return Responses.error(
+			return CompletableFuture.completedFuture(Responses.error(
 				ctx, msg, HttpResponseStatus.BAD_REQUEST,
 				"missing_uuid"
-			);
+			));
 		}
 
 		Optional<UUID> uuid = Util.parseUuidLenient(qs.parameters().get("uuid").getFirst());
 		if (uuid.isEmpty()) {
-			return Responses.error(
+			return CompletableFuture.completedFuture(Responses.error(
 				ctx, msg, HttpResponseStatus.BAD_REQUEST,
 				"invalid_uuid"
-			);
-		}
-
-		ExpiryHolder<AbstractClanData> data;
-		try {
-			data = connection.dataCache.clanData.get(uuid.orElseThrow())
-				.get(10, TimeUnit.SECONDS);
-		} catch (ExecutionException | InterruptedException e) {
-			log.error("error while retrieving clan data", e);
-			return Responses.error(
-				ctx, msg, HttpResponseStatus.INTERNAL_SERVER_ERROR,
-				"internal_server_error"
-			);
-		} catch (TimeoutException e) {
-			return Responses.error(
-				ctx, msg, HttpResponseStatus.INTERNAL_SERVER_ERROR,
-				"packet_timeout"
-			);
+			));
 		}
 
-		FullHttpResponse response = Responses.json(
-			ctx, msg, HttpResponseStatus.OK,
-			w -> Serialization.clan(w, data.value(), connection.dataCache)
+		return await(
+			ctx, msg, connection.dataCache.clanData.get(uuid.orElseThrow()),
+			TIMEOUT_SECONDS, "clan data",
+			data -> {
+				FullHttpResponse response = responseCache.json(
+					ctx, msg, new ResponseCache.Key("clan_data", uuid.orElseThrow(), 0),
+					w -> Serialization.clan(w, data.value(), connection.dataCache),
+					data
+				);
+				Responses.cacheHeaders(response, data);
+				return response;
+			}
 		);
-		if (data.expires() != null) {
-			Responses.cacheHeaders(response, data.expires());
-		}
-		return response;
 	}
 
-	private FullHttpResponse clanDataBulk(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs){
+	private CompletableFuture<FullHttpResponse> clanDataBulk(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs) {
 		BfConnection connection = connectionReference.get();
 
 		FullHttpResponse methodResponse = Responses.checkMethod(ctx, msg, HttpMethod.POST);
 		if (methodResponse != null) {
-			return methodResponse;
+			return CompletableFuture.completedFuture(methodResponse);
 		}
-		if (connection == null || !connection.isConnectedAndVerified()) {
-			return Responses.error(
+		if (connection == null) {
+			return CompletableFuture.completedFuture(Responses.error(
 				ctx, msg, HttpResponseStatus.SERVICE_UNAVAILABLE,
 				"cloud_disconnected"
-			);
+			));
 		}
 
 		Pair<Set<UUID>, FullHttpResponse> uuidsResult = parseUuidSet(ctx, msg);
 		if (uuidsResult.right() != null) {
-			return uuidsResult.right();
+			return CompletableFuture.completedFuture(uuidsResult.right());
 		}
 
 		var dataFutures = connection.dataCache.clanData.get(uuidsResult.left());
-		try {
-			CompletableFuture.allOf(dataFutures.values().toArray(new CompletableFuture[0])).get(20, TimeUnit.SECONDS);
-		} catch (InterruptedException | ExecutionException e) {
-			log.error("error while retrieving bulk clan data", e);
-			return Responses.error(
-				ctx, msg, HttpResponseStatus.INTERNAL_SERVER_ERROR,
-				"internal_server_error"
-			);
-		} catch (TimeoutException e) {
-			return Responses.error(
-				ctx, msg, HttpResponseStatus.INTERNAL_SERVER_ERROR,
-				"packet_timeout"
-			);
-		}
-		List<AbstractClanData> clanDatas = dataFutures.values().stream()
-			.map(f -> f.join().value()).toList();
 
-		return Responses.json(
-			ctx, msg, HttpResponseStatus.OK,
-			w -> {
-				w.beginArray();
-				for (AbstractClanData clanData : clanDatas) {
-					Serialization.clan(w, clanData, connection.dataCache);
-				}
-				w.endArray();
+		return await(
+			ctx, msg, CompletableFuture.allOf(dataFutures.values().toArray(new CompletableFuture[0])),
+			BULK_TIMEOUT_SECONDS, "bulk clan data",
+			_ -> {
+				List<AbstractClanData> clanDatas = dataFutures.values().stream()
+					.map(f -> f.join().value()).toList();
+
+				return Responses.json(
+					ctx, msg, HttpResponseStatus.OK,
+					w -> {
+						w.beginArray();
+						for (AbstractClanData clanData : clanDatas) {
+							Serialization.clan(w, clanData, connection.dataCache);
+						}
+						w.endArray();
+					}
+				);
 			}
 		);
 	}
 
-	private FullHttpResponse cloudData(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs) {
+	private CompletableFuture<FullHttpResponse> cloudData(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs) {
 		BfConnection connection = connectionReference.get();
 
 		FullHttpResponse methodResponse = Responses.checkMethod(ctx, msg, HttpMethod.GET);
 		if (methodResponse != null) {
-			return methodResponse;
+			return CompletableFuture.completedFuture(methodResponse);
 		}
-		if (connection == null || !connection.isConnectedAndVerified()) {
-			return Responses.error(
+		if (connection == null) {
+			return CompletableFuture.completedFuture(Responses.error(
 				ctx, msg, HttpResponseStatus.SERVICE_UNAVAILABLE,
 				"cloud_disconnected"
-			);
-		}
-
-		ExpiryHolder<BfCloudData> data;
-		try {
-			data = connection.dataCache.cloudData.get()
-				.get(10, TimeUnit.SECONDS);
-		} catch (ExecutionException | InterruptedException e) {
-			log.error("error while retrieving cloud data", e);
-			return Responses.error(
-				ctx, msg, HttpResponseStatus.INTERNAL_SERVER_ERROR,
-				"internal_server_error"
-			);
-		} catch (TimeoutException e) {
-			return Responses.error(
-				ctx, msg, HttpResponseStatus.INTERNAL_SERVER_ERROR,
-				"packet_timeout"
-			);
+			));
 		}
 
-		FullHttpResponse response = Responses.json(
-			ctx, msg, HttpResponseStatus.OK,
-			w -> data.value().serialize(w, connection.dataCache)
+		return await(
+			ctx, msg, connection.dataCache.cloudData.get(),
+			TIMEOUT_SECONDS, "cloud data",
+			data -> {
+				FullHttpResponse response = responseCache.json(
+					ctx, msg, new ResponseCache.Key("cloud_data", null, 0),
+					w -> data.value().serialize(w, connection.dataCache),
+					data
+				);
+				Responses.cacheHeaders(response, data);
+				return response;
+			}
 		);
-		if (data.expires() != null) {
-			Responses.cacheHeaders(response, data.expires());
-		}
-		return response;
 	}
 
-	private FullHttpResponse playerData(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs) {
+	private CompletableFuture<FullHttpResponse> player(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs) {
 		BfConnection connection = connectionReference.get();
 		UnofficialCloudData ucd = ucdReference.get();
 
 		FullHttpResponse methodResponse = Responses.checkMethod(ctx, msg, HttpMethod.GET);
 		if (methodResponse != null) {
-			return methodResponse;
+			return CompletableFuture.completedFuture(methodResponse);
 		}
-		if (connection == null || !connection.isConnectedAndVerified()) {
-			return Responses.error(
+		if (connection == null) {
+			return CompletableFuture.completedFuture(Responses.error(
 				ctx, msg, HttpResponseStatus.SERVICE_UNAVAILABLE,
 				"cloud_disconnected"
-			);
+			));
 		}
 
-		Pair<UUID, FullHttpResponse> uuidResult = playerUuidFromParams(ctx, msg, qs);
-		if (uuidResult.right() != null) {
-			return uuidResult.right();
+		int sections = 0;
+		if (qs.parameters().containsKey("sections")) {
+			for (String section : qs.parameters().get("sections").getFirst().split(",")) {
+				int index = PLAYER_SECTIONS.indexOf(section.trim());
+				if (index == -1) {
+					return CompletableFuture.completedFuture(Responses.error(
+						ctx, msg, HttpResponseStatus.BAD_REQUEST,
+						"invalid_sections"
+					));
+				}
+				sections |= 1 << index;
+			}
+		} else {
+			sections = (1 << PLAYER_SECTIONS.size()) - 1;
 		}
-		UUID uuid = uuidResult.left();
 
-		ExpiryHolder<BfPlayerData> data;
-		try {
-			data = connection.dataCache.playerData.get(uuid)
-				.get(10, TimeUnit.SECONDS);
-		} catch (ExecutionException | InterruptedException e) {
-			log.error("error while retrieving player data", e);
-			return Responses.error(
-				ctx, msg, HttpResponseStatus.INTERNAL_SERVER_ERROR,
-				"internal_server_error"
-			);
-		} catch (TimeoutException e) {
-			return Responses.error(
-				ctx, msg, HttpResponseStatus.INTERNAL_SERVER_ERROR,
-				"packet_timeout"
+		int finalSections = sections;
+		return playerUuidFromParams(ctx, msg, qs).thenCompose(uuidResult -> {
+			if (uuidResult.right() != null) {
+				return CompletableFuture.completedFuture(uuidResult.right());
+			}
+			UUID uuid = uuidResult.left();
+
+			CompletableFuture<ExpiryHolder<BfPlayerData>> dataFuture = null;
+			CompletableFuture<@Nullable BfCloudData> cloudDataFuture = null;
+			CompletableFuture<ExpiryHolder<PlayerStatus>> statusFuture = null;
+			CompletableFuture<ExpiryHolder<BfPlayerInventory>> inventoryFuture = null;
+			CompletableFuture<ExpiryHolder<Set<UUID>>> equippedFuture = null;
+
+			// every missing section goes out in one request packet
+			connection.requestBatcher.suspendFlush();
+			try {
+				if ((finalSections & PLAYER_SECTION_DATA) != 0) {
+					dataFuture = connection.dataCache.playerData.get(uuid);
+					cloudDataFuture = optionalCloudData(ctx, connection);
+				}
+				if ((finalSections & PLAYER_SECTION_STATUS) != 0) {
+					statusFuture = connection.dataCache.playerStatus.get(uuid);
+				}
+				if ((finalSections & PLAYER_SECTION_INVENTORY) != 0) {
+					inventoryFuture = connection.dataCache.playerInventory.get(uuid);
+				}
+				if ((finalSections & PLAYER_SECTION_EQUIPPED) != 0) {
+					equippedFuture = connection.dataCache.itemDefault.get(uuid);
+				}
+			} finally {
+				connection.requestBatcher.resumeFlush();
+			}
+
+			CompletableFuture<ExpiryHolder<BfPlayerData>> finalDataFuture = dataFuture;
+			CompletableFuture<@Nullable BfCloudData> finalCloudDataFuture = cloudDataFuture;
+			CompletableFuture<ExpiryHolder<PlayerStatus>> finalStatusFuture = statusFuture;
+			CompletableFuture<ExpiryHolder<BfPlayerInventory>> finalInventoryFuture = inventoryFuture;
+			CompletableFuture<ExpiryHolder<Set<UUID>>> finalEquippedFuture = equippedFuture;
+			CompletableFuture<?>[] futures = Stream.of(dataFuture, cloudDataFuture, statusFuture, inventoryFuture, equippedFuture)
+				.filter(Objects::nonNull)
+				.toArray(CompletableFuture<?>[]::new);
+
+			return await(
+				ctx, msg, CompletableFuture.allOf(futures),
+				TIMEOUT_SECONDS, "player",
+				_ -> {
+					ExpiryHolder<BfPlayerData> data = finalDataFuture != null ? finalDataFuture.join() : null;
+					BfCloudData cloudData = finalCloudDataFuture != null ? finalCloudDataFuture.join() : null;
+					ExpiryHolder<PlayerStatus> status = finalStatusFuture != null ? finalStatusFuture.join() : null;
+					ExpiryHolder<BfPlayerInventory> inventory = finalInventoryFuture != null ? finalInventoryFuture.join() : null;
+					ExpiryHolder<Set<UUID>> equipped = finalEquippedFuture != null ? finalEquippedFuture.join() : null;
+
+					FullHttpResponse response = responseCache.json(
+						ctx, msg, new ResponseCache.Key("player", uuid, finalSections),
+						w -> {
+							w.beginObject();
+							w.name("player").beginObject();
+							Serialization.playerStub(w, connection.dataCache, uuid);
+							w.endObject();
+							if (data != null) {
+								w.name("data");
+								data.value().serialize(w, cloudData, ucd);
+							}
+							if (status != null) {
+								w.name("status");
+								Serialization.playerStatus(w, status.value(), connection.dataCache, null);
+							}
+							if (inventory != null) {
+								w.name("inventory");
+								Serialization.playerInventory(w, inventory.value(), connection.registry, false, false, null);
+							}
+							if (equipped != null) {
+								w.name("equipped").beginArray();
+								for (UUID equippedUuid : equipped.value()) {
+									w.value(Util.getBase64Uuid(equippedUuid));
+								}
+								w.endArray();
+							}
+							w.endObject();
+						},
+						data, cloudData, ucd != null ? ucd.getPlayerExpLeaderboard().version() : null, status, inventory, equipped
+					);
+					Responses.cacheHeaders(response, data, status, inventory, equipped);
+					return response;
+				}
 			);
-		}
+		});
+	}
 
-		FullHttpResponse response = Responses.json(
-			ctx, msg, HttpResponseStatus.OK,
-			w -> data.value().serialize(w, connection.dataCache, ucd)
-		);
-		if (data.expires() != null) {
-			Responses.cacheHeaders(response, data.expires());
+	private CompletableFuture<FullHttpResponse> playerData(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs) {
+		BfConnection connection = connectionReference.get();
+		UnofficialCloudData ucd = ucdReference.get();
+
+		FullHttpResponse methodResponse = Responses.checkMethod(ctx, msg, HttpMethod.GET);
+		if (methodResponse != null) {
+			return CompletableFuture.completedFuture(methodResponse);
+		}
+		if (connection == null) {
+			return CompletableFuture.completedFuture(Responses.error(
+				ctx, msg, HttpResponseStatus.SERVICE_UNAVAILABLE,
+				"cloud_disconnected"
+			));
 		}
-		return response;
+
+		return playerUuidFromParams(ctx, msg, qs).thenCompose(uuidResult -> {
+			if (uuidResult.right() != null) {
+				return CompletableFuture.completedFuture(uuidResult.right());
+			}
+			UUID uuid = uuidResult.left();
+
+			return await(
+				ctx, msg, connection.dataCache.playerData.get(uuid).thenCombine(optionalCloudData(ctx, connection), Pair::of),
+				TIMEOUT_SECONDS, "player data",
+				result -> {
+					ExpiryHolder<BfPlayerData> data = result.left();
+					FullHttpResponse response = responseCache.json(
+						ctx, msg, new ResponseCache.Key("player_data", uuid, 0),
+						w -> data.value().serialize(w, result.right(), ucd),
+						data, result.right(), ucd != null ? ucd.getPlayerExpLeaderboard().version() : null
+					);
+					Responses.cacheHeaders(response, data);
+					return response;
+				}
+			);
+		});
 	}
 
-	private FullHttpResponse playerDataBulk(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs) {
+	private CompletableFuture<FullHttpResponse> playerDataBulk(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs) {
 		BfConnection connection = connectionReference.get();
 		UnofficialCloudData ucd = ucdReference.get();
 
 		FullHttpResponse methodResponse = Responses.checkMethod(ctx, msg, HttpMethod.POST);
 		if (methodResponse != null) {
-			return methodResponse;
+			return CompletableFuture.completedFuture(methodResponse);
 		}
-		if (connection == null || !connection.isConnectedAndVerified()) {
-			return Responses.error(
+		if (connection == null) {
+			return CompletableFuture.completedFuture(Responses.error(
 				ctx, msg, HttpResponseStatus.SERVICE_UNAVAILABLE,
 				"cloud_disconnected"
-			);
+			));
 		}
 
 		Pair<Set<UUID>, FullHttpResponse> uuidsResult = parseUuidSet(ctx, msg);
 		if (uuidsResult.right() != null) {
-			return uuidsResult.right();
+			return CompletableFuture.completedFuture(uuidsResult.right());
 		}
 
 		var dataFutures = connection.dataCache.playerData.get(uuidsResult.left());
-		try {
-			CompletableFuture.allOf(dataFutures.values().toArray(new CompletableFuture[0])).get(20, TimeUnit.SECONDS);
-		} catch (InterruptedException | ExecutionException e) {
-			log.error("error while retrieving bulk player data", e);
-			return Responses.error(
-				ctx, msg, HttpResponseStatus.INTERNAL_SERVER_ERROR,
-				"internal_server_error"
-			);
-		} catch (TimeoutException e) {
-			return Responses.error(
-				ctx, msg, HttpResponseStatus.INTERNAL_SERVER_ERROR,
-				"packet_timeout"
-			);
-		}
-		List<BfPlayerData> playerDatas = dataFutures.values().stream()
-			.map(f -> f.join().value()).toList();
 
-		return Responses.json(
-			ctx, msg, HttpResponseStatus.OK,
-			w -> {
-				w.beginArray();
-				for (BfPlayerData playerData : playerDatas) {
-					playerData.serialize(w, connection.dataCache, ucd);
-				}
-				w.endArray();
+		return await(
+			ctx, msg, CompletableFuture.allOf(dataFutures.values().toArray(new CompletableFuture[0])).thenCombine(optionalCloudData(ctx, connection), (_, cloudData) -> Optional.ofNullable(cloudData)),
+			BULK_TIMEOUT_SECONDS, "bulk player data",
+			cloudData -> {
+				List<BfPlayerData> playerDatas = dataFutures.values().stream()
+					.map(f -> f.join().value()).toList();
+
+				return Responses.json(
+					ctx, msg, HttpResponseStatus.OK,
+					w -> {
+						w.beginArray();
+						for (BfPlayerData playerData : playerDatas) {
+							playerData.serialize(w, cloudData.orElse(null), ucd);
+						}
+						w.endArray();
+					}
+				);
 			}
 		);
 	}
 
-	private FullHttpResponse playerInventory(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs) {
+	private CompletableFuture<FullHttpResponse> playerInventory(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs) {
 		BfConnection connection = connectionReference.get();
 
 		FullHttpResponse methodResponse = Responses.checkMethod(ctx, msg, HttpMethod.GET);
 		if (methodResponse != null) {
-			return methodResponse;
+			return CompletableFuture.completedFuture(methodResponse);
 		}
-		if (connection == null || !connection.isConnectedAndVerified()) {
-			return Responses.error(
+		if (connection == null) {
+			return CompletableFuture.completedFuture(Responses.error(
 				ctx, msg, HttpResponseStatus.SERVICE_UNAVAILABLE,
 				"cloud_disconnected"
-			);
+			));
 		}
 
 		boolean includeUuid = false;
@@ -359,10 +492,10 @@ public final class BfApiInboundHandler extends SimpleChannelInboundHandler<FullH
 			try {
 				includeUuid = Boolean.parseBoolean(qs.parameters().get("include_uuid").getFirst());
 			} catch (Exception e) {
-				return Responses.error(
+				return CompletableFuture.completedFuture(Responses.error(
 					ctx, msg, HttpResponseStatus.BAD_REQUEST,
 					"invalid_include_uuid"
-				);
+				));
 			}
 		}
 		boolean includeDetails = false;
@@ -370,288 +503,373 @@ public final class BfApiInboundHandler extends SimpleChannelInboundHandler<FullH
 			try {
 				includeDetails = Boolean.parseBoolean(qs.parameters().get("include_details").getFirst());
 			} catch (Exception e) {
-				return Responses.error(
+				return CompletableFuture.completedFuture(Responses.error(
 					ctx, msg, HttpResponseStatus.BAD_REQUEST,
 					"invalid_include_details"
-				);
+				));
 			}
 		}
 
-		Pair<UUID, FullHttpResponse> uuidResult = playerUuidFromParams(ctx, msg, qs);
-		if (uuidResult.right() != null) {
-			return uuidResult.right();
-		}
-		UUID uuid = uuidResult.left();
-
-		ExpiryHolder<BfPlayerInventory> data;
-		try {
-			data = connection.dataCache.playerInventory.get(uuid)
-				.get(10, TimeUnit.SECONDS);
-		} catch (ExecutionException | InterruptedException e) {
-			log.error("error while retrieving player data", e);
-			return Responses.error(
-				ctx, msg, HttpResponseStatus.INTERNAL_SERVER_ERROR,
-				"internal_server_error"
-			);
-		} catch (TimeoutException e) {
-			return Responses.error(
-				ctx, msg, HttpResponseStatus.INTERNAL_SERVER_ERROR,
-				"packet_timeout"
-			);
-		}
-
 		boolean finalIncludeUuid = includeUuid;
 		boolean finalIncludeDetails = includeDetails;
-		FullHttpResponse response = Responses.json(
-			ctx, msg, HttpResponseStatus.OK,
-			w -> Serialization.playerInventory(
-				w, data.value(), connection.registry, finalIncludeUuid, finalIncludeDetails,
-				Util.unchecked(w2 -> {
-					w2.name("player").beginObject();
-					Serialization.playerStub(w2, connection.dataCache, uuid);
-					w2.endObject();
-				})
-			)
-		);
-		if (data.expires() != null) {
-			Responses.cacheHeaders(response, data.expires());
-		}
-		return response;
+		return playerUuidFromParams(ctx, msg, qs).thenCompose(uuidResult -> {
+			if (uuidResult.right() != null) {
+				return CompletableFuture.completedFuture(uuidResult.right());
+			}
+			UUID uuid = uuidResult.left();
+
+			return await(
+				ctx, msg, connection.dataCache.playerInventory.get(uuid),
+				TIMEOUT_SECONDS, "player inventory",
+				data -> {
+					FullHttpResponse response = responseCache.json(
+						ctx, msg, new ResponseCache.Key("player_inventory", uuid, (finalIncludeUuid ? 1 : 0) | (finalIncludeDetails ? 2 : 0)),
+						w -> Serialization.playerInventory(
+							w, data.value(), connection.registry, finalIncludeUuid, finalIncludeDetails,
+							Util.unchecked(w2 -> {
+								w2.name("player").beginObject();
+								Serialization.playerStub(w2, connection.dataCache, uuid);
+								w2.endObject();
+							})
+						),
+						data
+					);
+					Responses.cacheHeaders(response, data);
+					return response;
+				}
+			);
+		});
 	}
 
-	private FullHttpResponse playerInventoryEquipped(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs) {
+	private CompletableFuture<FullHttpResponse> playerInventoryEquipped(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs) {
 		BfConnection connection = connectionReference.get();
 
 		FullHttpResponse methodResponse = Responses.checkMethod(ctx, msg, HttpMethod.GET);
 		if (methodResponse != null) {
-			return methodResponse;
+			return CompletableFuture.completedFuture(methodResponse);
 		}
-		if (connection == null || !connection.isConnectedAndVerified()) {
-			return Responses.error(
+		if (connection == null) {
+			return CompletableFuture.completedFuture(Responses.error(
 				ctx, msg, HttpResponseStatus.SERVICE_UNAVAILABLE,
 				"cloud_disconnected"
-			);
-		}
-
-		Pair<UUID, FullHttpResponse> uuidResult = playerUuidFromParams(ctx, msg, qs);
-		if (uuidResult.right() != null) {
-			return uuidResult.right();
-		}
-		UUID uuid = uuidResult.left();
-
-		ExpiryHolder<Set<UUID>> data;
-		try {
-			data = connection.dataCache.itemDefault.get(uuid)
-				.get(10, TimeUnit.SECONDS);
-		} catch (ExecutionException | InterruptedException e) {
-			log.error("error while retrieving player data", e);
-			return Responses.error(
-				ctx, msg, HttpResponseStatus.INTERNAL_SERVER_ERROR,
-				"internal_server_error"
-			);
-		} catch (TimeoutException e) {
-			return Responses.error(
-				ctx, msg, HttpResponseStatus.INTERNAL_SERVER_ERROR,
-				"packet_timeout"
-			);
+			));
 		}
 
-		FullHttpResponse response = Responses.json(
-			ctx, msg,
-			HttpResponseStatus.OK,
-			w -> {
-				w.beginObject();
-				w.name("equipped").beginArray();
-				for (UUID equippedUuid : data.value()) {
-					w.value(Util.getBase64Uuid(equippedUuid));
-				}
-				w.endArray();
-				w.name("player").beginObject();
-				Serialization.playerStub(w, connection.dataCache, uuid);
-				w.endObject();
-				w.endObject();
+		return playerUuidFromParams(ctx, msg, qs).thenCompose(uuidResult -> {
+			if (uuidResult.right() != null) {
+				return CompletableFuture.completedFuture(uuidResult.right());
 			}
-		);
-		if (data.expires() != null) {
-			Responses.cacheHeaders(response, data.expires());
-		}
-		return response;
+			UUID uuid = uuidResult.left();
+
+			return await(
+				ctx, msg, connection.dataCache.itemDefault.get(uuid),
+				TIMEOUT_SECONDS, "equipped items",
+				data -> {
+					FullHttpResponse response = responseCache.json(
+						ctx, msg, new ResponseCache.Key("player_inventory/equipped", uuid, 0),
+						w -> {
+							w.beginObject();
+							w.name("equipped").beginArray();
+							for (UUID equippedUuid : data.value()) {
+								w.value(Util.getBase64Uuid(equippedUuid));
+							}
+							w.endArray();
+							w.name("player").beginObject();
+							Serialization.playerStub(w, connection.dataCache, uuid);
+							w.endObject();
+							w.endObject();
+						},
+						data
+					);
+					Responses.cacheHeaders(response, data);
+					return response;
+				}
+			);
+		});
 	}
 
-	private FullHttpResponse playerStatus(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs) {
+	private CompletableFuture<FullHttpResponse> playerStatus(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs) {
 		BfConnection connection = connectionReference.get();
 
 		FullHttpResponse methodResponse = Responses.checkMethod(ctx, msg, HttpMethod.GET);
 		if (methodResponse != null) {
-			return methodResponse;
+			return CompletableFuture.completedFuture(methodResponse);
 		}
-		if (connection == null || !connection.isConnectedAndVerified()) {
-			return Responses.error(
+		if (connection == null) {
+			return CompletableFuture.completedFuture(Responses.error(
 				ctx, msg, HttpResponseStatus.SERVICE_UNAVAILABLE,
 				"cloud_disconnected"
-			);
-		}
-
-		Pair<UUID, FullHttpResponse> uuidResult = playerUuidFromParams(ctx, msg, qs);
-		if (uuidResult.right() != null) {
-			return uuidResult.right();
+			));
 		}
-		UUID uuid = uuidResult.left();
 
-		ExpiryHolder<PlayerStatus> data;
-		try {
-			data = connection.dataCache.playerStatus.get(uuid)
-				.get(10, TimeUnit.SECONDS);
-		} catch (ExecutionException | InterruptedException e) {
-			log.error("error while retrieving player data", e);
-			return Responses.error(
-				ctx, msg, HttpResponseStatus.INTERNAL_SERVER_ERROR,
-				"internal_server_error"
-			);
-		} catch (TimeoutException e) {
-			return Responses.error(
-				ctx, msg, HttpResponseStatus.INTERNAL_SERVER_ERROR,
-				"packet_timeout"
+		return playerUuidFromParams(ctx, msg, qs).thenCompose(uuidResult -> {
+			if (uuidResult.right() != null) {
+				return CompletableFuture.completedFuture(uuidResult.right());
+			}
+			UUID uuid = uuidResult.left();
+
+			return await(
+				ctx, msg, connection.dataCache.playerStatus.get(uuid),
+				TIMEOUT_SECONDS, "player status",
+				data -> {
+					FullHttpResponse response = responseCache.json(
+						ctx, msg, new ResponseCache.Key("player_status", uuid, 0),
+						w -> Serialization.playerStatus(
+							w, data.value(), connection.dataCache,
+							Util.unchecked(w2 -> {
+								w2.name("player").beginObject();
+								Serialization.playerStub(w2, connection.dataCache, uuid);
+								w2.endObject();
+							})
+						),
+						data
+					);
+					Responses.cacheHeaders(response, data);
+					return response;
+				}
 			);
-		}
-
-		FullHttpResponse response = Responses.json(
-			ctx, msg,
-			HttpResponseStatus.OK,
-			w -> Serialization.playerStatus(
-				w, data.value(), connection.dataCache,
-				Util.unchecked(w2 -> {
-					w2.name("player").beginObject();
-					Serialization.playerStub(w2, connection.dataCache, uuid);
-					w2.endObject();
-				})
-			)
-		);
-		if (data.expires() != null) {
-			Responses.cacheHeaders(response, data.expires());
-		}
-		return response;
+		});
 	}
 
-	private FullHttpResponse playerStatusBulk(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs) {
+	private CompletableFuture<FullHttpResponse> playerStatusBulk(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs) {
 		BfConnection connection = connectionReference.get();
 
 		FullHttpResponse methodResponse = Responses.checkMethod(ctx, msg, HttpMethod.POST);
 		if (methodResponse != null) {
-			return methodResponse;
+			return CompletableFuture.completedFuture(methodResponse);
 		}
-		if (connection == null || !connection.isConnectedAndVerified()) {
-			return Responses.error(
+		if (connection == null) {
+			return CompletableFuture.completedFuture(Responses.error(
 				ctx, msg, HttpResponseStatus.SERVICE_UNAVAILABLE,
 				"cloud_disconnected"
-			);
+			));
 		}
 
 		Pair<Set<UUID>, FullHttpResponse> uuidsResult = parseUuidSet(ctx, msg);
 		if (uuidsResult.right() != null) {
-			return uuidsResult.right();
+			return CompletableFuture.completedFuture(uuidsResult.right());
 		}
 
 		var dataFutures = connection.dataCache.playerStatus.get(uuidsResult.left());
-		try {
-			CompletableFuture.allOf(dataFutures.values().toArray(new CompletableFuture[0])).get(20, TimeUnit.SECONDS);
-		} catch (InterruptedException | ExecutionException e) {
-			log.error("error while retrieving bulk player status", e);
-			return Responses.error(
-				ctx, msg, HttpResponseStatus.INTERNAL_SERVER_ERROR,
-				"internal_server_error"
-			);
-		} catch (TimeoutException e) {
-			return Responses.error(
-				ctx, msg, HttpResponseStatus.INTERNAL_SERVER_ERROR,
-				"packet_timeout"
-			);
-		}
-		Map<UUID, PlayerStatus> playerStatuses = dataFutures.entrySet().stream()
-			.collect(Collectors.toMap(
-				Map.Entry::getKey,
-				e -> e.getValue().join().value()
-			));
 
-		return Responses.json(
-			ctx, msg, HttpResponseStatus.OK,
-			w -> {
-				w.beginArray();
-				for (Map.Entry<UUID, PlayerStatus> entry : playerStatuses.entrySet()) {
-					Serialization.playerStatus(
-						w, entry.getValue(), connection.dataCache,
-						Util.unchecked(w2 -> {
-							w2.name("player").beginObject();
-							Serialization.playerStub(w2, connection.dataCache, entry.getKey());
-							w2.endObject();
-						})
-					);
-				}
-				w.endArray();
+		return await(
+			ctx, msg, CompletableFuture.allOf(dataFutures.values().toArray(new CompletableFuture[0])),
+			BULK_TIMEOUT_SECONDS, "bulk player status",
+			_ -> {
+				Map<UUID, PlayerStatus> playerStatuses = dataFutures.entrySet().stream()
+					.collect(Collectors.toMap(
+						Map.Entry::getKey,
+						e -> e.getValue().join().value()
+					));
+
+				return Responses.json(
+					ctx, msg, HttpResponseStatus.OK,
+					w -> {
+						w.beginArray();
+						for (Map.Entry<UUID, PlayerStatus> entry : playerStatuses.entrySet()) {
+							Serialization.playerStatus(
+								w, entry.getValue(), connection.dataCache,
+								Util.unchecked(w2 -> {
+									w2.name("player").beginObject();
+									Serialization.playerStub(w2, connection.dataCache, entry.getKey());
+									w2.endObject();
+								})
+							);
+						}
+						w.endArray();
+					}
+				);
 			}
 		);
 	}
 
-	private FullHttpResponse ucdClanList(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs) {
+	private CompletableFuture<FullHttpResponse> ucdClanList(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs) {
 		UnofficialCloudData ucd = ucdReference.get();
 
 		FullHttpResponse methodResponse = Responses.checkMethod(ctx, msg, HttpMethod.GET);
 		if (methodResponse != null) {
-			return methodResponse;
+			return CompletableFuture.completedFuture(methodResponse);
 		}
 		if (ucd == null) {
-			return Responses.error(
+			return CompletableFuture.completedFuture(Responses.error(
 				ctx, msg, HttpResponseStatus.SERVICE_UNAVAILABLE,
 				"ucd_unavailable"
-			);
+			));
 		}
 
-		return Responses.json(
+		return CompletableFuture.completedFuture(Responses.json(
 			ctx, msg, HttpResponseStatus.OK,
 			ucd::serializeClanList
-		);
+		));
 	}
 
-	private FullHttpResponse ucdPlayerExpLeaderboard(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs) {
+	private CompletableFuture<FullHttpResponse> ucdPlayerExpLeaderboard(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs) {
 		UnofficialCloudData ucd = ucdReference.get();
 
 		FullHttpResponse methodResponse = Responses.checkMethod(ctx, msg, HttpMethod.GET);
 		if (methodResponse != null) {
-			return methodResponse;
+			return CompletableFuture.completedFuture(methodResponse);
 		}
 		if (ucd == null) {
-			return Responses.error(
+			return CompletableFuture.completedFuture(Responses.error(
 				ctx, msg, HttpResponseStatus.SERVICE_UNAVAILABLE,
 				"ucd_unavailable"
-			);
+			));
 		}
 
+		ExpLeaderboard leaderboard = ucd.getPlayerExpLeaderboard();
+		Object version = leaderboard.version();
+
+		boolean hasOffset = qs.parameters().containsKey("offset");
+		boolean hasCursor = qs.parameters().containsKey("cursor");
+		boolean hasAround = qs.parameters().containsKey("around");
+		if (!(hasOffset || hasCursor || hasAround || qs.parameters().containsKey("limit"))) {
+			return CompletableFuture.completedFuture(responseCache.json(
+				ctx, msg, new ResponseCache.Key("ucd/player_exp_leaderboard", null, 0),
+				w -> ucd.serializePlayerLeaderboard(w, leaderboard.toList()),
+				version
+			));
+		}
+		if ((hasOffset ? 1 : 0) + (hasCursor ? 1 : 0) + (hasAround ? 1 : 0) > 1) {
+			return CompletableFuture.completedFuture(Responses.error(
+				ctx, msg, HttpResponseStatus.BAD_REQUEST,
+				"conflicting_position"
+			));
+		}
 
-		return Responses.json(
-			ctx, msg, HttpResponseStatus.OK,
-			w -> ucd.serializePlayerLeaderboard(w, ucd.getPlayerExpLeaderboard())
-		);
+		int limit = DEFAULT_LEADERBOARD_PAGE_SIZE;
+		if (qs.parameters().containsKey("limit")) {
+			try {
+				limit = Integer.parseInt(qs.parameters().get("limit").getFirst());
+			} catch (NumberFormatException e) {
+				limit = -1;
+			}
+			if (limit < 1 || limit > MAX_LEADERBOARD_PAGE_SIZE) {
+				return CompletableFuture.completedFuture(Responses.error(
+					ctx, msg, HttpResponseStatus.BAD_REQUEST,
+					"invalid_limit"
+				));
+			}
+		}
+
+		int offset = 0;
+		if (hasOffset) {
+			try {
+				offset = Integer.parseInt(qs.parameters().get("offset").getFirst());
+			} catch (NumberFormatException e) {
+				offset = -1;
+			}
+			if (offset < 0) {
+				return CompletableFuture.completedFuture(Responses.error(
+					ctx, msg, HttpResponseStatus.BAD_REQUEST,
+					"invalid_offset"
+				));
+			}
+		} else if (hasCursor) {
+			Optional<ExpLeaderboard.Cursor> cursor = ExpLeaderboard.Cursor.decode(qs.parameters().get("cursor").getFirst());
+			if (cursor.isEmpty()) {
+				return CompletableFuture.completedFuture(Responses.error(
+					ctx, msg, HttpResponseStatus.BAD_REQUEST,
+					"invalid_cursor"
+				));
+			}
+			offset = leaderboard.rankAfter(cursor.orElseThrow());
+		} else if (hasAround) {
+			Optional<UUID> uuid = Util.parseUuidLenient(qs.parameters().get("around").getFirst());
+			if (uuid.isEmpty()) {
+				return CompletableFuture.completedFuture(Responses.error(
+					ctx, msg, HttpResponseStatus.BAD_REQUEST,
+					"invalid_around"
+				));
+			}
+			int rank = leaderboard.rankOf(uuid.orElseThrow());
+			if (rank == -1) {
+				return CompletableFuture.completedFuture(Responses.error(
+					ctx, msg, HttpResponseStatus.NOT_FOUND,
+					"player_not_ranked"
+				));
+			}
+			offset = Math.max(rank - limit / 2, 0);
+		}
+
+		// pages are keyed by their resolved window, so cursor, around and offset requests for it share one body
+		int finalOffset = offset;
+		int finalLimit = limit;
+		return CompletableFuture.completedFuture(responseCache.json(
+			ctx, msg, new ResponseCache.Key("ucd/player_exp_leaderboard/page", null, (long) offset << 32 | limit),
+			w -> ucd.serializePlayerLeaderboardPage(w, leaderboard.page(finalOffset, finalLimit)),
+			version
+		));
 	}
 
-	private FullHttpResponse bfUcdRefresh(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs) {
+	private CompletableFuture<FullHttpResponse> bfUcdRefresh(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs) {
 		BfConnection connection = connectionReference.get();
 		UnofficialCloudData ucd = ucdReference.get();
 
 		FullHttpResponse methodResponse = Responses.checkMethod(ctx, msg, HttpMethod.POST);
 		if (methodResponse != null) {
-			return methodResponse;
+			return CompletableFuture.completedFuture(methodResponse);
 		}
 		if (connection == null || !connection.isConnectedAndVerified()) {
-			return Responses.error(
+			return CompletableFuture.completedFuture(Responses.error(
 				ctx, msg, HttpResponseStatus.SERVICE_UNAVAILABLE,
 				"cloud_disconnected"
-			);
+			));
+		}
+
+		FullHttpResponse secretResponse = checkSecret(ctx, msg);
+		if (secretResponse != null) {
+			return CompletableFuture.completedFuture(secretResponse);
+		}
+
+		if (!ucd.startRefresh()) {
+			return CompletableFuture.completedFuture(Responses.error(
+				ctx, msg, HttpResponseStatus.CONFLICT,
+				"refresh_in_progress"
+			));
 		}
 
+		return CompletableFuture.completedFuture(new DefaultFullHttpResponse(
+			msg.protocolVersion(),
+			HttpResponseStatus.NO_CONTENT
+		));
+	}
+
+	private CompletableFuture<FullHttpResponse> stats(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs) {
+		BfConnection connection = connectionReference.get();
+
+		FullHttpResponse methodResponse = Responses.checkMethod(ctx, msg, HttpMethod.POST);
+		if (methodResponse != null) {
+			return CompletableFuture.completedFuture(methodResponse);
+		}
+		FullHttpResponse secretResponse = checkSecret(ctx, msg);
+		if (secretResponse != null) {
+			return CompletableFuture.completedFuture(secretResponse);
+		}
+
+		return CompletableFuture.completedFuture(Responses.json(
+			ctx, msg, HttpResponseStatus.OK,
+			w -> {
+				w.beginObject();
+				if (connection != null) {
+					w.name("cloud_requests");
+					connection.requestBatcher.serializeStats(w);
+					w.name("cache");
+					connection.dataCache.serializeStats(w);
+				}
+				w.endObject();
+			}
+		));
+	}
+
+	/**
+	 * @return an error response if the request body isn't the private route secret, otherwise {@code null}
+	 */
+	private @Nullable FullHttpResponse checkSecret(ChannelHandlerContext ctx, FullHttpRequest msg) {
 		ByteBuf content = msg.content();
 		int contentLength = content.readableBytes();
 
-		if (contentLength != ucdRefreshSecret.length()) {
+		if (ucdRefreshSecret == null || contentLength != ucdRefreshSecret.length()) {
 			return Responses.error(
 				ctx, msg, HttpResponseStatus.FORBIDDEN,
 				"invalid_secret"
@@ -669,51 +887,113 @@ public final class BfApiInboundHandler extends SimpleChannelInboundHandler<FullH
 			);
 		}
 
-		if (!ucd.startRefresh()) {
+		return null;
+	}
+
+	/**
+	 * Waits for {@code future} without blocking and builds the response on the work executor.
+	 * Failures and timeouts are mapped to the usual error responses.
+	 */
+	private <T> CompletableFuture<FullHttpResponse> await(ChannelHandlerContext ctx, FullHttpRequest msg, CompletableFuture<T> future, long timeoutSeconds, String description, Function<T, FullHttpResponse> responder) {
+		return withDeadline(ctx, future, timeoutSeconds).handleAsync((value, e) -> {
+			if (e == null) {
+				return responder.apply(value);
+			}
+
+			Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+			if (cause instanceof CloudDisconnectedException) {
+				return Responses.error(
+					ctx, msg, HttpResponseStatus.SERVICE_UNAVAILABLE,
+					"cloud_disconnected"
+				);
+			}
+			if (cause instanceof UnknownUuidException) {
+				return Responses.error(
+					ctx, msg, HttpResponseStatus.NOT_FOUND,
+					"unknown_uuid"
+				);
+			}
+			if (cause instanceof TimeoutException) {
+				return Responses.error(
+					ctx, msg, HttpResponseStatus.INTERNAL_SERVER_ERROR,
+					"packet_timeout"
+				);
+			}
+
+			log.error("error while retrieving {}", description, cause);
 			return Responses.error(
-				ctx, msg, HttpResponseStatus.CONFLICT,
-				"refresh_in_progress"
+				ctx, msg, HttpResponseStatus.INTERNAL_SERVER_ERROR,
+				"internal_server_error"
 			);
+		}, workExecutor != null ? workExecutor : Util.directIfInEventLoop(ctx.executor()));
+	}
+
+	/**
+	 * Returns a view of {@code future} that fails with a {@link TimeoutException} once the deadline passes.
+	 * The deadline is tracked by the channel's event loop timer, and the shared cache future is left untouched.
+	 */
+	private static <T> CompletableFuture<T> withDeadline(ChannelHandlerContext ctx, CompletableFuture<T> future, long timeoutSeconds) {
+		if (future.isDone()) {
+			return future;
 		}
 
-		return new DefaultFullHttpResponse(
-			msg.protocolVersion(),
-			HttpResponseStatus.NO_CONTENT
+		CompletableFuture<T> deadline = new CompletableFuture<>();
+		ScheduledFuture<?> timeout = ctx.executor().schedule(
+			() -> deadline.completeExceptionally(new TimeoutException()),
+			timeoutSeconds, TimeUnit.SECONDS
 		);
+		future.whenComplete((value, e) -> {
+			timeout.cancel(false);
+			if (e != null) {
+				deadline.completeExceptionally(e);
+			} else {
+				deadline.complete(value);
+			}
+		});
+
+		return deadline;
 	}
 
-	private static Pair<UUID, @Nullable FullHttpResponse> playerUuidFromParams(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs) {
+	private static CompletableFuture<@Nullable BfCloudData> optionalCloudData(ChannelHandlerContext ctx, BfConnection connection) {
+		return withDeadline(ctx, connection.dataCache.cloudData.get(), TIMEOUT_SECONDS).handle((data, e) -> {
+			if (e != null) {
+				log.error("cloud data fetch for player serialization failed", e);
+				return null;
+			}
+			return data.value();
+		});
+	}
+
+	private static CompletableFuture<Pair<UUID, @Nullable FullHttpResponse>> playerUuidFromParams(ChannelHandlerContext ctx, FullHttpRequest msg, QueryStringDecoder qs) {
 		boolean hasUuid = qs.parameters().containsKey("uuid");
 		boolean hasName = qs.parameters().containsKey("name");
 		if (!(hasUuid || hasName)) {
-			return Pair.of(null, Responses.error(
+			return CompletableFuture.completedFuture(Pair.of(null, Responses.error(
 				ctx, msg, HttpResponseStatus.BAD_REQUEST,
 				"missing_uuid_or_name"
-			));
+			)));
 		}
 		if (hasUuid && hasName) {
-			return Pair.of(null, Responses.error(
+			return CompletableFuture.completedFuture(Pair.of(null, Responses.error(
 				ctx, msg, HttpResponseStatus.BAD_REQUEST,
 				"both_uuid_and_name"
-			));
+			)));
 		}
 
-		UUID uuid;
 		if (hasUuid) {
 			Optional<UUID> uuidParseResult = Util.parseUuidLenient(qs.parameters().get("uuid").getFirst());
 			if (uuidParseResult.isEmpty()) {
-				return Pair.of(null, Responses.error(
+				return CompletableFuture.completedFuture(Pair.of(null, Responses.error(
 					ctx, msg, HttpResponseStatus.BAD_REQUEST,
 					"invalid_uuid"
-				));
+				)));
 			}
 
-			uuid = uuidParseResult.orElseThrow();
-		} else {
-			Optional<MinecraftProfileData> profile;
-			try {
-				profile = MinecraftProfileData.retrieveByName(qs.parameters().get("name").getFirst());
-			} catch (IOException | InterruptedException e) {
+			return CompletableFuture.completedFuture(Pair.of(uuidParseResult.orElseThrow(), null));
+		}
+
+		return MinecraftProfileData.retrieveByNameAsync(qs.parameters().get("name").getFirst()).handle((profile, e) -> {
+			if (e != null) {
 				return Pair.of(null, Responses.error(
 					ctx, msg, HttpResponseStatus.INTERNAL_SERVER_ERROR,
 					"profile_unavailable"
@@ -726,10 +1006,8 @@ public final class BfApiInboundHandler extends SimpleChannelInboundHandler<FullH
 				));
 			}
 
-			uuid = profile.orElseThrow().uuid();
-		}
-
-		return Pair.of(uuid, null);
+			return Pair.of(profile.orElseThrow().uuid(), null);
+		});
 	}
 
 	private static Pair<Set<UUID>, @Nullable FullHttpResponse> parseUuidSet(ChannelHandlerContext ctx, FullHttpRequest msg) {
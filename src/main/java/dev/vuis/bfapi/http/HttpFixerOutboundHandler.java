@@ -5,6 +5,7 @@ import io.netty.channel.ChannelOutboundHandlerAdapter;
 import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
 
 public class HttpFixerOutboundHandler extends ChannelOutboundHandlerAdapter {
 	@Override
@@ -13,7 +14,8 @@ public class HttpFixerOutboundHandler extends ChannelOutboundHandlerAdapter {
 			super.write(ctx, msg, promise);
 			return;
 		}
-		if (!httpResponse.headers().contains(HttpHeaderNames.CONTENT_LENGTH)) {
+		// a 304 must not advertise its own (empty) length in place of the cached entity's
+		if (!httpResponse.headers().contains(HttpHeaderNames.CONTENT_LENGTH) && !httpResponse.status().equals(HttpResponseStatus.NOT_MODIFIED)) {
 			httpResponse.headers().addInt(HttpHeaderNames.CONTENT_LENGTH, httpResponse.content().readableBytes());
 		}
 		if (!httpResponse.headers().contains(HttpHeaderNames.ACCESS_CONTROL_ALLOW_ORIGIN)) {
@@ -0,0 +1,295 @@
+package dev.vuis.bfapi.http;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.gson.stream.JsonWriter;
+import dev.vuis.bfapi.util.Responses;
+import dev.vuis.bfapi.util.ThrowingConsumer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.concurrent.FastThreadLocal;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPOutputStream;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Caches encoded JSON response bodies so repeated hits on the same cache entry skip serialization.
+ * <p>
+ * Each body remembers the objects it was built from (usually {@link dev.vuis.bfapi.util.cache.ExpiryHolder}s),
+ * and is rebuilt once any of them is replaced. Concurrent misses for the same key serialize once.
+ * Bodies carry a content hash ETag and a Last-Modified time that only moves when the bytes change.
+ * <p>
+ * Serializers that fall back on placeholder data call {@link #markProvisional()}; such a body is sent once and then
+ * rebuilt on the next request instead of being reused.
+ */
+@Slf4j
+public final class ResponseCache {
+	private static final FastThreadLocal<Boolean> PROVISIONAL = new FastThreadLocal<>();
+
+	private final Cache<Key, Entry> cache;
+	private final int compressionMinBytes;
+
+	/**
+	 * @param compressionMinBytes bodies smaller than this are never sent compressed
+	 */
+	public ResponseCache(long maxBytes, int compressionMinBytes) {
+		this.compressionMinBytes = compressionMinBytes;
+		cache = CacheBuilder.newBuilder()
+			.maximumWeight(maxBytes)
+			.<Key, Entry>weigher((_, entry) -> entry.weight())
+			.expireAfterAccess(Duration.ofMinutes(10))
+			.removalListener((RemovalListener<Key, Entry>) notification -> notification.getValue().release())
+			.build();
+	}
+
+	/**
+	 * Builds a {@code 200 OK} response with validators, or a bodiless {@code 304 Not Modified} if the request's
+	 * {@code If-None-Match} or {@code If-Modified-Since} still matches the cached body.
+	 * Clients accepting gzip get the entry's gzip variant, which is compressed once, when the entry is cached.
+	 */
+	public FullHttpResponse json(ChannelHandlerContext ctx, FullHttpRequest msg, @NotNull Key key, ThrowingConsumer<JsonWriter> writerConsumer, @Nullable Object... sources) {
+		Entry entry;
+		ByteBuf body;
+		try {
+			entry = entry(key, writerConsumer, sources);
+			body = entry.retainedBody();
+			if (body == null) {
+				// evicted between lookup and retain
+				entry = build(sources, writerConsumer, entry, true);
+				body = entry.retainedBody();
+			}
+		} catch (Exception e) {
+			log.error("failed to serialize json", e);
+			return Responses.error(
+				ctx, msg,
+				HttpResponseStatus.INTERNAL_SERVER_ERROR,
+				"serialization_error"
+			);
+		}
+		if (entry.detached) {
+			entry.release();
+		}
+
+		FullHttpResponse response;
+		if (isNotModified(msg, entry)) {
+			body.release();
+			response = new DefaultFullHttpResponse(msg.protocolVersion(), HttpResponseStatus.NOT_MODIFIED);
+		} else {
+			boolean gzip = false;
+			if (body.readableBytes() >= compressionMinBytes && Responses.acceptsEncoding(msg, "gzip")) {
+				ByteBuf gzipBody = entry.retainedGzipBody();
+				if (gzipBody != null) {
+					body.release();
+					body = gzipBody;
+					gzip = true;
+				}
+			}
+
+			response = new DefaultFullHttpResponse(msg.protocolVersion(), HttpResponseStatus.OK, body);
+			response.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/json; charset=utf-8");
+			if (gzip) {
+				// the pipeline's compressor passes through bodies that already have a coding
+				response.headers().set(HttpHeaderNames.CONTENT_ENCODING, HttpHeaderValues.GZIP);
+			}
+		}
+		response.headers()
+			.set(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING)
+			.set(HttpHeaderNames.ETAG, entry.etag)
+			.set(HttpHeaderNames.LAST_MODIFIED, Responses.httpDate(entry.lastModified));
+
+		return response;
+	}
+
+	/**
+	 * Marks the body being built on this thread as provisional. Does nothing outside of a cached build.
+	 */
+	public static void markProvisional() {
+		if (PROVISIONAL.isSet()) {
+			PROVISIONAL.set(true);
+		}
+	}
+
+	private Entry entry(Key key, ThrowingConsumer<JsonWriter> writerConsumer, @Nullable Object[] sources) throws Exception {
+		Entry entry = cache.getIfPresent(key);
+		if (entry != null && !entry.provisional && entry.matches(sources)) {
+			return entry;
+		}
+
+		if (entry != null) {
+			cache.asMap().remove(key, entry);
+		}
+
+		Entry previous = entry;
+		try {
+			entry = cache.get(key, () -> build(sources, writerConsumer, previous, false));
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			if (e.getCause() instanceof Exception cause) {
+				throw cause;
+			}
+			throw e;
+		}
+
+		if (!entry.matches(sources)) {
+			// another generation won the race for this key; don't fight over it
+			return build(sources, writerConsumer, entry, true);
+		}
+		return entry;
+	}
+
+	private static boolean isNotModified(FullHttpRequest msg, Entry entry) {
+		String ifNoneMatch = msg.headers().get(HttpHeaderNames.IF_NONE_MATCH);
+		if (ifNoneMatch != null) {
+			for (String tag : ifNoneMatch.split(",")) {
+				tag = tag.trim();
+				if (tag.equals("*") || weakTag(tag).equals(weakTag(entry.etag))) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		String ifModifiedSince = msg.headers().get(HttpHeaderNames.IF_MODIFIED_SINCE);
+		if (ifModifiedSince != null) {
+			Instant since = Responses.parseHttpDate(ifModifiedSince);
+			return since != null && !entry.lastModified.isAfter(since);
+		}
+
+		return false;
+	}
+
+	private static String weakTag(String tag) {
+		return tag.startsWith("W/") ? tag.substring(2) : tag;
+	}
+
+	private Entry build(@Nullable Object[] sources, ThrowingConsumer<JsonWriter> writerConsumer, @Nullable Entry previous, boolean detached) throws Exception {
+		Entry entry;
+		PROVISIONAL.set(false);
+		try {
+			ByteBuf body = serialize(writerConsumer);
+			entry = new Entry(sources, body, previous, detached, PROVISIONAL.get());
+		} finally {
+			PROVISIONAL.remove();
+		}
+		if (!detached && entry.body.readableBytes() >= compressionMinBytes) {
+			// compressed up front so the cache weighs it
+			entry.compress();
+		}
+		return entry;
+	}
+
+	private static ByteBuf serialize(ThrowingConsumer<JsonWriter> writerConsumer) throws Exception {
+		return Responses.writeJson(PooledByteBufAllocator.DEFAULT.directBuffer(), writerConsumer);
+	}
+
+	/**
+	 * @param route the route the body belongs to
+	 * @param uuid the entity the body describes, if any
+	 * @param flags query flags and parameters that change the body
+	 */
+	public record Key(@NotNull String route, @Nullable UUID uuid, long flags) {
+	}
+
+	private static final class Entry {
+		private final @Nullable Object[] sources;
+		private final ByteBuf body;
+		private final String etag;
+		private final Instant lastModified;
+		/**
+		 * Whether this entry lives outside the cache and is released by its user.
+		 */
+		private final boolean detached;
+		/**
+		 * Whether the body used placeholder data, so it must not be served again.
+		 */
+		private final boolean provisional;
+		private @Nullable ByteBuf gzipBody = null;
+		private boolean released = false;
+
+		Entry(@Nullable Object[] sources, ByteBuf body, @Nullable Entry previous, boolean detached, boolean provisional) {
+			this.sources = sources;
+			this.body = body;
+			this.detached = detached;
+			this.provisional = provisional;
+			// weak, since the same entity may be sent with different content codings
+			this.etag = "W/\"" + Hashing.murmur3_128().hashBytes(body.nioBuffer()) + "\"";
+			// identical bytes from a newer cloud response haven't been modified
+			this.lastModified = previous != null && previous.etag.equals(etag)
+				? previous.lastModified
+				: Instant.now().truncatedTo(ChronoUnit.SECONDS);
+		}
+
+		boolean matches(@Nullable Object[] other) {
+			if (sources.length != other.length) {
+				return false;
+			}
+			for (int i = 0; i < sources.length; i++) {
+				if (sources[i] != other[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		int weight() {
+			return body.readableBytes() + (gzipBody != null ? gzipBody.readableBytes() : 0);
+		}
+
+		// pooled buffers are recycled after release, so retain and release must not interleave
+		synchronized @Nullable ByteBuf retainedBody() {
+			return released ? null : body.retainedDuplicate();
+		}
+
+		synchronized void compress() {
+			if (!released && gzipBody == null) {
+				gzipBody = gzip(body);
+			}
+		}
+
+		/**
+		 * @return the gzip variant, which only cached entries have, or {@code null}
+		 */
+		synchronized @Nullable ByteBuf retainedGzipBody() {
+			return released || gzipBody == null ? null : gzipBody.retainedDuplicate();
+		}
+
+		synchronized void release() {
+			if (!released) {
+				released = true;
+				body.release();
+				if (gzipBody != null) {
+					gzipBody.release();
+				}
+			}
+		}
+
+		private static @Nullable ByteBuf gzip(ByteBuf body) {
+			ByteBuf out = PooledByteBufAllocator.DEFAULT.directBuffer(body.readableBytes() / 4 + 64);
+			try (GZIPOutputStream gzip = new GZIPOutputStream(new ByteBufOutputStream(out))) {
+				body.getBytes(body.readerIndex(), gzip, body.readableBytes());
+			} catch (IOException e) {
+				log.error("failed to compress response body", e);
+				out.release();
+				return null;
+			}
+			return out;
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package dev.vuis.bfapi.http;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.AttributeKey;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+/**
+ * Writes a connection's responses in the order their requests arrived. Requests finish out of order, for example a
+ * cache hit behind one waiting on the cloud, and pipelined HTTP/1.1 responses are matched to requests by order alone.
+ * HTTP/2 streams are channels of their own, so each only ever sees one request.
+ * <p>
+ * Confined to the channel's event loop.
+ */
+final class ResponseSequencer {
+	private static final AttributeKey<ResponseSequencer> KEY = AttributeKey.valueOf("bfapi.responseSequencer");
+
+	private final Int2ObjectMap<Runnable> waiting = new Int2ObjectOpenHashMap<>();
+	private int nextRequest = 0;
+	private int nextResponse = 0;
+
+	/**
+	 * Numbers a request as it is read; must be called on the event loop, in read order.
+	 */
+	static int next(ChannelHandlerContext ctx) {
+		return of(ctx.channel()).nextRequest++;
+	}
+
+	/**
+	 * Runs {@code write} once the responses to every earlier request on the channel have been written.
+	 */
+	static void write(ChannelHandlerContext ctx, int sequence, Runnable write) {
+		if (!ctx.executor().inEventLoop()) {
+			ctx.executor().execute(() -> write(ctx, sequence, write));
+			return;
+		}
+
+		ResponseSequencer sequencer = of(ctx.channel());
+		if (sequence != sequencer.nextResponse) {
+			sequencer.waiting.put(sequence, write);
+			return;
+		}
+
+		write.run();
+		sequencer.nextResponse++;
+		Runnable next;
+		while ((next = sequencer.waiting.remove(sequencer.nextResponse)) != null) {
+			next.run();
+			sequencer.nextResponse++;
+		}
+	}
+
+	private static ResponseSequencer of(Channel channel) {
+		ResponseSequencer sequencer = channel.attr(KEY).get();
+		if (sequencer == null) {
+			sequencer = new ResponseSequencer();
+			channel.attr(KEY).set(sequencer);
+		}
+		return sequencer;
+	}
+}
@@ -0,0 +1,67 @@
+package dev.vuis.bfapi.http;
+
+import dev.vuis.bfapi.util.Responses;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hands each decoded request to {@link BfApiInboundHandler} on a worker executor (normally one virtual thread per task),
+ * keeping routing, name lookups and serialization off the Netty event loop.
+ * Responses are still written through the channel's own executor.
+ */
+@Slf4j
+@ChannelHandler.Sharable
+public final class VirtualThreadDispatcher extends ChannelInboundHandlerAdapter {
+	private final BfApiInboundHandler inboundHandler;
+	private final Executor executor;
+	private final Semaphore inFlight;
+
+	public VirtualThreadDispatcher(BfApiInboundHandler inboundHandler, Executor executor, int maxInFlightRequests) {
+		this.inboundHandler = inboundHandler;
+		this.executor = executor;
+		this.inFlight = new Semaphore(maxInFlightRequests);
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) {
+		if (!(msg instanceof FullHttpRequest request)) {
+			ctx.fireChannelRead(msg);
+			return;
+		}
+
+		int sequence = ResponseSequencer.next(ctx);
+		if (!inFlight.tryAcquire()) {
+			try {
+				BfApiInboundHandler.writeResponse(
+					ctx, sequence, request.method(), request.uri(), HttpUtil.isKeepAlive(request),
+					Responses.error(
+						ctx, request, HttpResponseStatus.SERVICE_UNAVAILABLE,
+						"server_busy"
+					)
+				);
+			} finally {
+				request.release();
+			}
+			return;
+		}
+
+		executor.execute(() -> {
+			try {
+				inboundHandler.handle(ctx, request, sequence).whenComplete((_, _) -> inFlight.release());
+			} catch (Throwable e) {
+				inFlight.release();
+				log.error("failed to dispatch {} {}", request.method(), request.uri(), e);
+				ctx.close();
+			} finally {
+				request.release();
+			}
+		});
+	}
+}
@@ -5,16 +5,19 @@ import com.google.gson.JsonObject;
 import dev.vuis.bfapi.cloud.BfCloudData;
 import dev.vuis.bfapi.cloud.BfCloudPacketHandlers;
 import dev.vuis.bfapi.cloud.BfConnection;
+import dev.vuis.bfapi.cloud.cache.CacheSnapshot;
 import dev.vuis.bfapi.cloud.unofficial.UnofficialCloudData;
 import dev.vuis.bfapi.data.BfApiConfig;
 import dev.vuis.bfapi.http.BfApiChannelInitializer;
 import dev.vuis.bfapi.http.BfApiInboundHandler;
+import dev.vuis.bfapi.http.VirtualThreadDispatcher;
 import dev.vuis.bfapi.util.FriendScraper;
+import dev.vuis.bfapi.util.NettyTransport;
 import dev.vuis.bfapi.util.Util;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
 import io.netty.channel.MultiThreadIoEventLoopGroup;
-import io.netty.channel.nio.NioIoHandler;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import it.unimi.dsi.fastutil.objects.ObjectIntImmutablePair;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
@@ -25,6 +28,7 @@ import java.util.Arrays;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -78,8 +82,21 @@ public final class ApiMain {
 		saveAuthJson(authManager, config.getTokensJsonPath());
 
 		log.info("starting HTTP server");
-		BfApiInboundHandler inboundHandler = new BfApiInboundHandler(config.getBfUcdRefreshSecret());
-		startHttpServer(inboundHandler, config.getApiPort());
+		ExecutorService workExecutor = config.isApiVirtualThreads() ? Executors.newVirtualThreadPerTaskExecutor() : null;
+		BfApiInboundHandler inboundHandler = new BfApiInboundHandler(config.getBfUcdRefreshSecret(), workExecutor);
+		VirtualThreadDispatcher dispatcher = null;
+		if (workExecutor != null) {
+			log.info("handling requests on virtual threads (max {} in flight)", config.getApiMaxInFlightRequests());
+			dispatcher = new VirtualThreadDispatcher(inboundHandler, workExecutor, config.getApiMaxInFlightRequests());
+		}
+		NettyTransport transport = config.getNettyTransport();
+		// one I/O group serves both HTTP connections and the cloud connection
+		EventLoopGroup ioGroup = new MultiThreadIoEventLoopGroup(config.getIoThreads(), transport.ioHandlerFactory());
+		EventLoopGroup acceptorGroup = startHttpServer(inboundHandler, dispatcher, config, ioGroup);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			acceptorGroup.shutdownGracefully();
+			ioGroup.shutdownGracefully();
+		}, "event loop shutdown"));
 
 		BfCloudPacketHandlers.register();
 		if (config.isBfScrapeFriends()) {
@@ -91,11 +108,21 @@ public final class ApiMain {
 			authManager,
 			config.getBfVersion(),
 			config.getBfVersionHash(),
-			config.getBfHardwareId()
+			config.getBfHardwareId(),
+			transport,
+			ioGroup
 		);
-		connection.connect();
-
 		UnofficialCloudData ucd = new UnofficialCloudData(ucdPlayers, connection.dataCache, config.isBfUcdWriteFilteredPlayers());
+		connection.dataCache.playerData.setDecodeListener(ucd::onPlayerData);
+		if (workExecutor != null) {
+			connection.dataCache.playerData.setDecodeExecutor(workExecutor);
+		}
+
+		if (config.getBfSnapshotPath() != null) {
+			startSnapshots(new CacheSnapshot(config.getBfSnapshotPath(), connection.dataCache, ucd), config);
+		}
+
+		connection.connect();
 
 		inboundHandler.connectionReference.set(connection);
 		inboundHandler.ucdReference.set(ucd);
@@ -103,6 +130,18 @@ public final class ApiMain {
 		connection.addStatusListener(status -> onConnectionStatusChanged(connection, status, config, ucd, ucdPlayers));
 	}
 
+	/**
+	 * Restores the last snapshot, then snapshots periodically and on shutdown.
+	 */
+	private static void startSnapshots(CacheSnapshot snapshot, BfApiConfig config) {
+		log.info("loading cache snapshot");
+		snapshot.load();
+
+		long intervalMillis = config.getBfSnapshotInterval().toMillis();
+		refreshExecutor.scheduleWithFixedDelay(snapshot::write, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+		Runtime.getRuntime().addShutdownHook(new Thread(snapshot::write, "cache snapshot"));
+	}
+
 	private static Set<UUID> parsePlayerListFile(Path playerListPath) {
 		try {
 			return Arrays.stream(Files.readString(playerListPath).split("\n")).map(UUID::fromString).collect(Collectors.toSet());
@@ -137,13 +176,29 @@ public final class ApiMain {
 		);
 	}
 
-	private static void startHttpServer(BfApiInboundHandler inboundHandler, int port) {
+	private static EventLoopGroup startHttpServer(BfApiInboundHandler inboundHandler, @Nullable VirtualThreadDispatcher dispatcher, BfApiConfig config, EventLoopGroup ioGroup) {
+		NettyTransport transport = config.getNettyTransport();
+		ChannelOption<Boolean> reusePortOption = transport.getReusePortOption();
+		// without SO_REUSEPORT only one socket can be bound to the port
+		int acceptors = reusePortOption != null ? Math.max(config.getApiAcceptorThreads(), 1) : 1;
+
+		EventLoopGroup acceptorGroup = new MultiThreadIoEventLoopGroup(acceptors, transport.ioHandlerFactory());
 		ServerBootstrap bootstrap = new ServerBootstrap()
-			.group(new MultiThreadIoEventLoopGroup(NioIoHandler.newFactory()))
-			.channel(NioServerSocketChannel.class)
-			.childHandler(new BfApiChannelInitializer(inboundHandler));
+			.group(acceptorGroup, ioGroup)
+			.channel(transport.getServerSocketChannelClass())
+			.childOption(ChannelOption.TCP_NODELAY, true)
+			.childHandler(new BfApiChannelInitializer(inboundHandler, dispatcher));
+		if (acceptors > 1) {
+			bootstrap.option(reusePortOption, true);
+		}
 
-		bootstrap.bind(port).syncUninterruptibly();
+		for (int i = 0; i < acceptors; i++) {
+			bootstrap.bind(config.getApiPort()).syncUninterruptibly();
+		}
+
+		log.info("HTTP server listening on port {} ({} transport, {} acceptors)", config.getApiPort(), transport, acceptors);
+
+		return acceptorGroup;
 	}
 
 	private static void onConnectionStatusChanged(BfConnection connection, ConnectionStatus status, BfApiConfig config, UnofficialCloudData ucd, Set<UUID> ucdPlayers) {
@@ -180,7 +235,9 @@ public final class ApiMain {
 		} catch (InterruptedException | TimeoutException e) {
 			return;
 		} catch (ExecutionException e) {
-			throw new RuntimeException(e);
+			// throwing would cancel the prefetch for good
+			log.warn("failed to get cloud data for prefetch", e.getCause());
+			return;
 		}
 
 		connection.dataCache.playerData.request(cloudData.playerScores().stream().map(ObjectIntImmutablePair::left).collect(Collectors.toUnmodifiableSet()), true);
@@ -0,0 +1,96 @@
+package dev.vuis.bfapi.util;
+
+import io.netty.channel.ChannelOption;
+import io.netty.channel.IoHandlerFactory;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollIoHandler;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioIoHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.uring.IoUring;
+import io.netty.channel.uring.IoUringChannelOption;
+import io.netty.channel.uring.IoUringIoHandler;
+import io.netty.channel.uring.IoUringServerSocketChannel;
+import io.netty.channel.uring.IoUringSocketChannel;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Netty I/O transports in order of preference. Native transports are only used where their library loads.
+ */
+@Slf4j
+public enum NettyTransport {
+	IO_URING(
+		IoUring::isAvailable, IoUringIoHandler::newFactory,
+		IoUringServerSocketChannel.class, IoUringSocketChannel.class,
+		IoUringChannelOption.SO_REUSEPORT
+	),
+	EPOLL(
+		Epoll::isAvailable, EpollIoHandler::newFactory,
+		EpollServerSocketChannel.class, EpollSocketChannel.class,
+		EpollChannelOption.SO_REUSEPORT
+	),
+	NIO(
+		() -> true, NioIoHandler::newFactory,
+		NioServerSocketChannel.class, NioSocketChannel.class,
+		null
+	);
+
+	private final BooleanSupplier availability;
+	private final Supplier<IoHandlerFactory> ioHandlerFactory;
+	@Getter
+	private final Class<? extends ServerChannel> serverSocketChannelClass;
+	@Getter
+	private final Class<? extends SocketChannel> socketChannelClass;
+	/**
+	 * {@code SO_REUSEPORT}, or {@code null} if unsupported
+	 */
+	@Getter
+	private final @Nullable ChannelOption<Boolean> reusePortOption;
+
+	NettyTransport(BooleanSupplier availability, Supplier<IoHandlerFactory> ioHandlerFactory, Class<? extends ServerChannel> serverSocketChannelClass, Class<? extends SocketChannel> socketChannelClass, @Nullable ChannelOption<Boolean> reusePortOption) {
+		this.availability = availability;
+		this.ioHandlerFactory = ioHandlerFactory;
+		this.serverSocketChannelClass = serverSocketChannelClass;
+		this.socketChannelClass = socketChannelClass;
+		this.reusePortOption = reusePortOption;
+	}
+
+	public boolean isAvailable() {
+		return availability.getAsBoolean();
+	}
+
+	public IoHandlerFactory ioHandlerFactory() {
+		return ioHandlerFactory.get();
+	}
+
+	/**
+	 * @param preference {@code auto} or a transport name
+	 * @return the preferred transport, falling back to the next available one
+	 */
+	public static @NotNull NettyTransport select(@NotNull String preference) {
+		if (!preference.equalsIgnoreCase("auto")) {
+			NettyTransport requested = valueOf(preference.toUpperCase());
+			if (requested.isAvailable()) {
+				return requested;
+			}
+			log.warn("netty transport {} is unavailable; falling back", requested);
+		}
+
+		for (NettyTransport transport : values()) {
+			if (transport.isAvailable()) {
+				return transport;
+			}
+		}
+		return NIO;
+	}
+}
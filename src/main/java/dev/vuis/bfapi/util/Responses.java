@@ -3,7 +3,8 @@ package dev.vuis.bfapi.util;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.stream.JsonWriter;
-import dev.vuis.bfapi.data.ByteBufWriter;
+import dev.vuis.bfapi.data.ByteBufJsonWriter;
+import dev.vuis.bfapi.util.cache.ExpiryHolder;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.ChannelHandlerContext;
@@ -18,6 +19,7 @@ import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Arrays;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
@@ -64,13 +66,10 @@ public final class Responses {
 	}
 
 	public static FullHttpResponse json(ChannelHandlerContext ctx, FullHttpRequest msg, HttpResponseStatus status, ThrowingConsumer<JsonWriter> writerConsumer) {
-		ByteBuf buf = ctx.alloc().buffer();
-		JsonWriter writer = new JsonWriter(new ByteBufWriter(buf, StandardCharsets.UTF_8));
-
+		ByteBuf buf;
 		try {
-			writerConsumer.accept(writer);
+			buf = writeJson(ctx.alloc().buffer(), writerConsumer);
 		} catch (Exception e) {
-			buf.release();
 			log.error("failed to serialize json", e);
 			return Responses.error(
 				ctx, msg,
@@ -85,6 +84,24 @@ public final class Responses {
 		return response;
 	}
 
+	/**
+	 * Serializes into {@code buf}, releasing it if serialization fails.
+	 */
+	public static ByteBuf writeJson(ByteBuf buf, ThrowingConsumer<JsonWriter> writerConsumer) throws Exception {
+		ByteBufJsonWriter writer = ByteBufJsonWriter.acquire(buf);
+
+		try {
+			writerConsumer.accept(writer);
+		} catch (Exception e) {
+			buf.release();
+			throw e;
+		} finally {
+			writer.release();
+		}
+
+		return buf;
+	}
+
 	public static @Nullable FullHttpResponse checkMethod(ChannelHandlerContext ctx, FullHttpRequest msg, HttpMethod... allowed) {
 		if (Arrays.stream(allowed).noneMatch(method -> method.equals(msg.method()))) {
 			FullHttpResponse response = error(
@@ -97,9 +114,80 @@ public final class Responses {
 		return null;
 	}
 
+	/**
+	 * @return whether the request's {@code Accept-Encoding} allows {@code coding} (exact token, nonzero q-value)
+	 */
+	public static boolean acceptsEncoding(FullHttpRequest msg, String coding) {
+		String acceptEncoding = msg.headers().get(HttpHeaderNames.ACCEPT_ENCODING);
+		if (acceptEncoding == null) {
+			return false;
+		}
+
+		for (String part : acceptEncoding.split(",")) {
+			String[] params = part.split(";");
+			if (!params[0].trim().equalsIgnoreCase(coding)) {
+				continue;
+			}
+			for (int i = 1; i < params.length; i++) {
+				String param = params[i].trim();
+				if (param.startsWith("q=")) {
+					try {
+						return Double.parseDouble(param.substring(2)) > 0;
+					} catch (NumberFormatException e) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
+		return false;
+	}
+
 	public static void cacheHeaders(FullHttpResponse response, Instant expires) {
 		response.headers()
-			.set(HttpHeaderNames.EXPIRES, DateTimeFormatter.RFC_1123_DATE_TIME.format(expires.atZone(ZoneOffset.UTC)))
+			.set(HttpHeaderNames.EXPIRES, httpDate(expires))
 			.set(HttpHeaderNames.CACHE_CONTROL, "public, max-age=" + Math.max(Duration.between(Instant.now(), expires).getSeconds(), 0));
 	}
+
+	/**
+	 * Sets caching headers for a response built from {@code holders}. Expiry follows the soonest-expiring holder,
+	 * and responses built from an expired holder are marked stale with {@code Age} and {@code Warning}.
+	 */
+	public static void cacheHeaders(FullHttpResponse response, @Nullable ExpiryHolder<?>... holders) {
+		Instant expires = null;
+		Instant staleSince = null;
+		for (ExpiryHolder<?> holder : holders) {
+			if (holder == null) {
+				continue;
+			}
+			if (holder.expires() != null && (expires == null || holder.expires().isBefore(expires))) {
+				expires = holder.expires();
+			}
+			if (holder.isExpired() && (staleSince == null || holder.updated().isBefore(staleSince))) {
+				staleSince = holder.updated();
+			}
+		}
+
+		if (expires != null) {
+			cacheHeaders(response, expires);
+		}
+		if (staleSince != null) {
+			response.headers()
+				.set(HttpHeaderNames.AGE, Math.max(Duration.between(staleSince, Instant.now()).getSeconds(), 0))
+				.set(HttpHeaderNames.WARNING, "110 - \"Response is Stale\"");
+		}
+	}
+
+	public static String httpDate(Instant instant) {
+		return DateTimeFormatter.RFC_1123_DATE_TIME.format(instant.atZone(ZoneOffset.UTC));
+	}
+
+	public static @Nullable Instant parseHttpDate(String str) {
+		try {
+			return DateTimeFormatter.RFC_1123_DATE_TIME.parse(str, Instant::from);
+		} catch (DateTimeParseException e) {
+			return null;
+		}
+	}
 }
@@ -1,29 +1,29 @@
 package dev.vuis.bfapi.util;
 
-import com.boehmod.bflib.cloud.common.AbstractClanData;
 import com.boehmod.bflib.cloud.common.player.PlayerRank;
 import com.google.gson.FormattingStyle;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import dev.vuis.bfapi.cloud.BfPlayerData;
 import dev.vuis.bfapi.cloud.cache.BfDataCache;
-import dev.vuis.bfapi.util.cache.ExpiryHolder;
+import io.netty.util.concurrent.EventExecutor;
 import java.net.InetSocketAddress;
 import java.net.URLEncoder;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
-import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.function.Function;
-import java.util.function.Predicate;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public final class Util {
 	private static final Base64.Encoder BASE64_ENCODER_NO_PADDING = Base64.getEncoder().withoutPadding();
+	public static final String UNKNOWN_NAME = "Unknown";
 	public static final int PRESTIGE_EXP = PlayerRank.getTotalRequiredEXPForRank(PlayerRank.GENERAL);
 
 	public static final Gson COMPACT_GSON = baseGsonBuilder()
@@ -154,29 +154,31 @@ public final class Util {
 	}
 
 	public static @NotNull String getCachedPlayerName(@Nullable BfDataCache dataCache, @NotNull UUID uuid) {
-		String name = "Unknown";
+		return Objects.requireNonNullElse(findCachedPlayerName(dataCache, uuid), UNKNOWN_NAME);
+	}
 
-		if (dataCache != null) {
-			BfPlayerData playerData = Util.ifNonNull(dataCache.playerData.getIfPresent(uuid), ExpiryHolder::value);
-			if (playerData != null) {
-				name = playerData.getUsername();
-			}
+	/**
+	 * @return the player's cached name, or {@code null} if they aren't cached
+	 */
+	public static @Nullable String findCachedPlayerName(@Nullable BfDataCache dataCache, @NotNull UUID uuid) {
+		if (dataCache == null) {
+			return null;
 		}
-
-		return name;
+		return dataCache.playerData.getCachedName(uuid);
 	}
 
 	public static @NotNull String getCachedClanName(@Nullable BfDataCache dataCache, @NotNull UUID uuid) {
-		String name = "Unknown";
+		return Objects.requireNonNullElse(findCachedClanName(dataCache, uuid), UNKNOWN_NAME);
+	}
 
-		if (dataCache != null) {
-			AbstractClanData playerData = Util.ifNonNull(dataCache.clanData.getIfPresent(uuid), ExpiryHolder::value);
-			if (playerData != null) {
-				name = playerData.getName();
-			}
+	/**
+	 * @return the clan's cached name, or {@code null} if it isn't cached
+	 */
+	public static @Nullable String findCachedClanName(@Nullable BfDataCache dataCache, @NotNull UUID uuid) {
+		if (dataCache == null) {
+			return null;
 		}
-
-		return name;
+		return Util.ifNonNull(dataCache.clanData.getIfPresent(uuid), holder -> holder.value().getName());
 	}
 
 	public static int getTotalExp(int prestige, int exp) {
@@ -184,15 +186,25 @@ public final class Util {
 	}
 
 	public static boolean hasPrestigeExp(BfPlayerData data) {
-		return data.getPrestigeLevel() > 0 || data.getExp() > PRESTIGE_EXP;
+		return hasPrestigeExp(data.getPrestigeLevel(), data.getExp());
+	}
+
+	public static boolean hasPrestigeExp(int prestige, int exp) {
+		return prestige > 0 || exp > PRESTIGE_EXP;
 	}
 
-	public static <T> int indexOf(List<T> list, Predicate<T> filter) {
-		for (int i = 0; i < list.size(); i++) {
-			if (filter.test(list.get(i))) {
-				return i;
+	/**
+	 * @return an executor that runs tasks inline when already on {@code executor}'s thread, avoiding a task hop;
+	 * this covers futures that are already complete, such as cache hits, but a future completed on another event loop
+	 * (like one the cloud connection completes) still hops
+	 */
+	public static Executor directIfInEventLoop(EventExecutor executor) {
+		return task -> {
+			if (executor.inEventLoop()) {
+				task.run();
+			} else {
+				executor.execute(task);
 			}
-		}
-		return -1;
+		};
 	}
 }
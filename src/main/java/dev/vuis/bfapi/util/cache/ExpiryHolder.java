@@ -4,5 +4,11 @@ import java.time.Instant;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-public record ExpiryHolder<T>(@NotNull T value, @Nullable Instant expires) {
+/**
+ * @param updated when {@code value} was received
+ */
+public record ExpiryHolder<T>(@NotNull T value, @NotNull Instant updated, @Nullable Instant expires) {
+	public boolean isExpired() {
+		return expires != null && !Instant.now().isBefore(expires);
+	}
 }